@@ -0,0 +1,231 @@
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+// Draws the console track. Each frame is assembled in one reusable char
+// buffer and written to the stream in a single call. On an ANSI terminal only
+// the rows that changed since the last frame are redrawn, using cursor
+// positioning; otherwise the whole frame is repainted after a form feed.
+public class ConsoleRenderer {
+    private static final int MAX_MESSAGES = 5;
+
+    private final PrintStream out;
+    private final boolean ansi;
+    private final int raceLength;
+    private final int laneRows;
+    private final long frameNanos;
+    private final CharsetEncoder encoder;
+
+    private char[][] rows;
+    private int[] rowLengths;
+    private char[][] shown;
+    private int[] shownLengths;
+    private int shownRows;
+    private final ArrayDeque<String> messages = new ArrayDeque<>();
+
+    private char[] frame = new char[4096];
+    private int frameLength;
+    private ByteBuffer bytes = ByteBuffer.allocate(8192);
+    private long nextFrame;
+
+    public ConsoleRenderer(String title, int raceLength, int lanes, int framesPerSecond) {
+        this(System.out, detectAnsi(), title, raceLength, lanes, framesPerSecond);
+    }
+
+    public ConsoleRenderer(PrintStream out, boolean ansi, String title, int raceLength, int lanes, int framesPerSecond) {
+        if (framesPerSecond <= 0) throw new IllegalArgumentException("Frame rate must be positive");
+        this.out = out;
+        this.ansi = ansi;
+        this.raceLength = raceLength;
+        this.frameNanos = 1_000_000_000L / framesPerSecond;
+        this.encoder = stdoutCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        this.laneRows = lanes;
+
+        int rowCount = lanes + 3 + MAX_MESSAGES;
+        rows = new char[rowCount][raceLength + 64];
+        rowLengths = new int[rowCount];
+        shown = new char[rowCount][0];
+        shownLengths = new int[rowCount];
+
+        setRow(0, title);
+        int border = raceLength + 30;
+        fill(1, '=', border);
+        fill(lanes + 2, '=', border);
+    }
+
+    private static boolean detectAnsi() {
+        String forced = System.getProperty("race.ansi");
+        if (forced != null) {
+            return Boolean.parseBoolean(forced);
+        }
+        return System.console() != null && System.getenv("TERM") != null;
+    }
+
+    private static Charset stdoutCharset() {
+        String name = System.getProperty("sun.stdout.encoding");
+        return name != null && Charset.isSupported(name) ? Charset.forName(name) : Charset.defaultCharset();
+    }
+
+    // Lays out one lane: |   A        |  info
+    public void setLane(int lane, int distance, char symbol, CharSequence info) {
+        int row = lane + 2;
+        int length = raceLength + 5 + info.length();
+        char[] chars = ensureRow(row, length);
+        int pos = 0;
+        chars[pos++] = '|';
+        for (int i = 0; i < distance; i++) chars[pos++] = ' ';
+        chars[pos++] = symbol;
+        for (int i = distance; i < raceLength; i++) chars[pos++] = ' ';
+        chars[pos++] = '|';
+        chars[pos++] = ' ';
+        chars[pos++] = ' ';
+        for (int i = 0; i < info.length(); i++) chars[pos++] = info.charAt(i);
+        rowLengths[row] = pos;
+    }
+
+    // Shown under the track; only the most recent few are kept.
+    public void addMessage(String message) {
+        if (messages.size() == MAX_MESSAGES) {
+            messages.removeFirst();
+        }
+        messages.addLast(message);
+        int row = laneRows + 3;
+        for (String m : messages) {
+            setRow(row++, m);
+        }
+    }
+
+    public void render() {
+        int rowCount = laneRows + 3 + messages.size();
+        frameLength = 0;
+        if (!ansi) {
+            append('\u000C');
+            for (int r = 0; r < rowCount; r++) {
+                append(rows[r], rowLengths[r]);
+                append('\n');
+            }
+        } else if (shownRows == 0) {
+            append("\u001B[H\u001B[2J");
+            for (int r = 0; r < rowCount; r++) {
+                append(rows[r], rowLengths[r]);
+                append('\n');
+                remember(r);
+            }
+        } else {
+            for (int r = 0; r < rowCount; r++) {
+                if (r < shownRows && Arrays.equals(rows[r], 0, rowLengths[r], shown[r], 0, shownLengths[r])) {
+                    continue;
+                }
+                moveCursor(r + 1);
+                append(rows[r], rowLengths[r]);
+                append("\u001B[K");
+                remember(r);
+            }
+            moveCursor(rowCount + 1);
+        }
+        shownRows = rowCount;
+        write();
+    }
+
+    // Sleeps until the next frame is due, keeping a steady rate even if a
+    // frame took a while to build.
+    public void awaitNextFrame() {
+        long now = System.nanoTime();
+        if (nextFrame == 0 || now - nextFrame > frameNanos) {
+            nextFrame = now;
+        }
+        nextFrame += frameNanos;
+        long wait;
+        while ((wait = nextFrame - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                throw new RuntimeException(new InterruptedException());
+            }
+        }
+    }
+
+    private void remember(int row) {
+        if (shown[row].length < rowLengths[row]) {
+            shown[row] = new char[rows[row].length];
+        }
+        System.arraycopy(rows[row], 0, shown[row], 0, rowLengths[row]);
+        shownLengths[row] = rowLengths[row];
+    }
+
+    private void setRow(int row, CharSequence text) {
+        char[] chars = ensureRow(row, text.length());
+        for (int i = 0; i < text.length(); i++) chars[i] = text.charAt(i);
+        rowLengths[row] = text.length();
+    }
+
+    private void fill(int row, char c, int times) {
+        Arrays.fill(ensureRow(row, times), 0, times, c);
+        rowLengths[row] = times;
+    }
+
+    private char[] ensureRow(int row, int length) {
+        if (rows[row].length < length) {
+            rows[row] = new char[length * 2];
+        }
+        return rows[row];
+    }
+
+    private void moveCursor(int row) {
+        append("\u001B[");
+        appendInt(row);
+        append(";1H");
+    }
+
+    private void appendInt(int value) {
+        if (value >= 10) {
+            appendInt(value / 10);
+        }
+        append((char) ('0' + value % 10));
+    }
+
+    private void append(char c) {
+        if (frameLength == frame.length) {
+            frame = Arrays.copyOf(frame, frame.length * 2);
+        }
+        frame[frameLength++] = c;
+    }
+
+    private void append(String s) {
+        for (int i = 0; i < s.length(); i++) append(s.charAt(i));
+    }
+
+    private void append(char[] chars, int length) {
+        if (frameLength + length > frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, frameLength + length));
+        }
+        System.arraycopy(chars, 0, frame, frameLength, length);
+        frameLength += length;
+    }
+
+    private void write() {
+        CharBuffer chars = CharBuffer.wrap(frame, 0, frameLength);
+        bytes.clear();
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isOverflow()) {
+                bytes = ByteBuffer.allocate(bytes.capacity() * 2).put(bytes.flip());
+            } else {
+                break;
+            }
+        }
+        encoder.flush(bytes);
+        out.write(bytes.array(), 0, bytes.position());
+        out.flush();
+    }
+}
@@ -1,10 +1,16 @@
-import java.util.concurrent.TimeUnit;
 import java.lang.Math;
 import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 public class Race {
     private final int raceLength;
     private final ArrayList<Horse> horses;
+    private SplittableRandom random = new SplittableRandom();
+    private int framesPerSecond = 10;
+    private ConsoleRenderer renderer;
+    private String[] laneInfo;
+    private double[] infoConfidence;
+    private boolean[] infoFallen;
 
     // there should have been a merge
 
@@ -23,11 +29,17 @@ public class Race {
         boolean finished = false;
         boolean allFallen = false;
 
+        int lanes = 0;
         for (Horse horse : horses) {
             if (horse != null) {
                 horse.goBackToStart();
+                lanes++;
             }
         }
+        renderer = new ConsoleRenderer("HORSE RACE SIMULATION", raceLength, lanes, framesPerSecond);
+        laneInfo = new String[lanes];
+        infoConfidence = new double[lanes];
+        infoFallen = new boolean[lanes];
 
         while (!finished && !allFallen) {
             // Move each horse
@@ -62,14 +74,20 @@ public class Race {
                 System.out.println("\nAll horses have fallen! The race is over with no winner.");
             }
 
-            try {
-                TimeUnit.MILLISECONDS.sleep(100);
-            } catch(Exception e) {
-                throw new RuntimeException(e);
-            }
+            renderer.awaitNextFrame();
         }
     }
 
+    // Seeding makes the next race repeat exactly, which helps when debugging.
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    public void setFramesPerSecond(int framesPerSecond) {
+        if (framesPerSecond <= 0) throw new IllegalArgumentException("Frame rate must be positive");
+        this.framesPerSecond = framesPerSecond;
+    }
+
     public void addHorse(Horse theHorse, int laneNumber) {
         int index = laneNumber - 1;
         while (horses.size() <= index) {
@@ -80,7 +98,7 @@ public class Race {
 
     private void moveHorse(Horse theHorse) {
         if (!theHorse.hasFallen()) {
-            if (Math.random() < theHorse.getConfidence()) {
+            if (random.nextDouble() < theHorse.getConfidence()) {
                 theHorse.moveForward();
 
                 // Check if this move made the horse win the race
@@ -90,9 +108,9 @@ public class Race {
                 }
             }
 
-            if (Math.random() < (0.05*theHorse.getConfidence()*theHorse.getConfidence())) {
+            if (random.nextDouble() < (0.05*theHorse.getConfidence()*theHorse.getConfidence())) {
                 theHorse.fall();
-                System.out.println("\n" + theHorse.getSymbol() + ": " + theHorse.getName() + " has fallen!");
+                renderer.addMessage(theHorse.getSymbol() + ": " + theHorse.getName() + " has fallen!");
                 theHorse.setConfidence(theHorse.getConfidence() - 0.1);
             }
         }
@@ -108,59 +126,28 @@ public class Race {
     }
 
     private void printRace() {
-        System.out.println("HORSE RACE SIMULATION");
-        multiplePrint('=', raceLength + 30);
-        System.out.println();
-
+        int row = 0;
         for (Horse horse : horses) {
             if (horse != null) {
-                printLaneWithInfo(horse);
-                System.out.println();
+                char symbol = horse.hasFallen() ? '❌' : horse.getSymbol(); // Fallen symbol
+                renderer.setLane(row, horse.getDistanceTravelled(), symbol, laneInfo(row, horse));
+                row++;
             }
         }
-
-        multiplePrint('=', raceLength + 30);
-        System.out.println();
-    }
-
-    private void printLaneWithInfo(Horse theHorse) {
-        int spacesBefore = theHorse.getDistanceTravelled();
-        int spacesAfter = raceLength - theHorse.getDistanceTravelled();
-
-        System.out.print('|');
-        multiplePrint(' ', spacesBefore);
-
-        if(theHorse.hasFallen()) {
-            System.out.print('❌' ); // Fallen symbol
-        } else {
-            System.out.print(theHorse.getSymbol());
-        }
-
-        multiplePrint(' ', spacesAfter);
-        System.out.print('|');
-
-        // Display horse info alongside the track
-        String status;
-        if (theHorse.hasFallen()) {
-
-            status = " (Fallen)";
-        }
-        else
-        {
-            status = "";
-        }
-        System.out.print("  " + theHorse.getSymbol() + ": " + theHorse.getName() +
-                " (Current Confidence: " + String.format("%.1f", theHorse.getConfidence()) + ")" + status);
+        renderer.render();
     }
 
-    private void multiplePrint(char aChar, int times)
-    {
-        int i = 0;
-        while (i < times)
-        {
-            System.out.print(aChar);
-            i = i + 1;
+    // Display horse info alongside the track, rebuilt only when it changes
+    private String laneInfo(int row, Horse theHorse) {
+        if (laneInfo[row] == null || infoConfidence[row] != theHorse.getConfidence()
+                || infoFallen[row] != theHorse.hasFallen()) {
+            infoConfidence[row] = theHorse.getConfidence();
+            infoFallen[row] = theHorse.hasFallen();
+            String status = theHorse.hasFallen() ? " (Fallen)" : "";
+            laneInfo[row] = theHorse.getSymbol() + ": " + theHorse.getName() +
+                    " (Current Confidence: " + String.format("%.1f", theHorse.getConfidence()) + ")" + status;
         }
+        return laneInfo[row];
     }
 
     public static void main(String[] args) {
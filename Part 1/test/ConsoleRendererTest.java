@@ -0,0 +1,22 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsoleRendererTest {
+    @Test
+    void laneInfoFillingTheRowSlackGrowsTheRow() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ConsoleRenderer renderer = new ConsoleRenderer(new PrintStream(bytes), false, "Race", 50, 1, 10);
+        // With the bars and spacing this needs a row one char longer than the 64 of slack.
+        String info = "A: " + "X".repeat(57);
+
+        renderer.setLane(0, 50, 'A', info);
+        renderer.render();
+
+        String lane = "|" + " ".repeat(50) + "A|  " + info;
+        assertTrue(bytes.toString().contains(lane + "\n"));
+    }
+}
@@ -79,18 +79,15 @@ class AddHorsePanel extends JPanel {
         }
     }
 
+    // Off while a race is running, as the field can't change mid-race.
+    void setAddEnabled(boolean enabled) {
+        addButton.setEnabled(enabled);
+    }
+
     private void clearFields() {
         nameField.setText("");
         confidenceField.setText("");
         shapeCombo.setSelectedIndex(0);
         colorCombo.setSelectedIndex(0);
     }
-
-    public void disableAdding() {
-        addButton.setEnabled(false);
-        nameField.setEnabled(false);
-        confidenceField.setEnabled(false);
-        shapeCombo.setEnabled(false);
-        colorCombo.setEnabled(false);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,273 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// Append-only write-ahead log of bets and what became of them:
+//
+//   header  magic version
+//   record  length crc type payload
+//
+//   BET     'B' bettor stake horse     stake taken, bet open
+//   SETTLE  'S' bettor payout          all the bettor's open bets settled
+//   REFUND  'X' bettor amount horse    that much of the bettor's open stake on the horse returned
+//
+// The CRC (CRC32C) covers the type and payload. Opening a ledger replays it
+// to rebuild every bettor's balance change and open bets; a torn or corrupt
+// record at the end, left by a crash, is cut off there.
+//
+// Records are durable when the record method returns. Writers append into a
+// shared buffer and then wait for it to reach the disk; whichever of them
+// gets there first writes everything appended so far with a single force(),
+// so concurrent bets share one sync instead of paying for one each.
+public class BetLedger implements Closeable {
+    static final byte BET = 'B';
+    static final byte SETTLE = 'S';
+    static final byte REFUND = 'X';
+
+    private static final int MAGIC = 0x48524231; // "HRB1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final CRC32C crc = new CRC32C();
+    private final Map<Long, Long> balanceChanges = new HashMap<>();
+    // Open stake per bettor, by horse name.
+    private final Map<Long, Map<String, Long>> openStakes = new HashMap<>();
+    private int recoveredRecords;
+
+    // 'filling', 'appended' and the state above belong to appendLock;
+    // 'spare' and the channel's writes belong to commitLock.
+    private final Object appendLock = new Object();
+    private final Object commitLock = new Object();
+    private ByteBuffer filling = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long appended;
+    private volatile long durable;
+    // Once a write fails the buffered records are gone, so nothing more is accepted.
+    private volatile IOException failure;
+
+    // Stake on one horse that has been logged but not yet settled or refunded.
+    public static final class OpenBet {
+        private final String horse;
+        private final long stake;
+
+        OpenBet(String horse, long stake) {
+            this.horse = horse;
+            this.stake = stake;
+        }
+
+        public String getHorse() {
+            return horse;
+        }
+
+        public long getStake() {
+            return stake;
+        }
+    }
+
+    private BetLedger(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public static BetLedger open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining()) channel.write(header);
+                channel.force(true);
+                return new BetLedger(channel);
+            }
+            return recover(file, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static BetLedger recover(Path file, FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) throw new IOException(file + " is too large to replay");
+        // Read into the heap rather than mapped: a file that is still mapped
+        // cannot be truncated on Windows, and the tail may need cutting off.
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+        while (data.hasRemaining()) {
+            if (channel.read(data, data.position()) < 0) break;
+        }
+        size = data.position();
+        if (size < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a bet ledger this version can read");
+        }
+
+        BetLedger ledger = new BetLedger(channel);
+        CRC32C check = new CRC32C();
+        int pos = HEADER_SIZE;
+        while (pos + RECORD_HEADER + 1 <= size) {
+            int length = data.getInt(pos);
+            int crc = data.getInt(pos + 4);
+            if (length < 0 || pos + RECORD_HEADER + 1 + (long) length > size) break;
+            check.reset();
+            check.update(data.slice(pos + RECORD_HEADER, length + 1));
+            if ((int) check.getValue() != crc) break;
+
+            ledger.apply(data.get(pos + RECORD_HEADER), data.slice(pos + RECORD_HEADER + 1, length));
+            ledger.recoveredRecords++;
+            pos += RECORD_HEADER + 1 + length;
+        }
+
+        if (pos < size) {
+            channel.truncate(pos);
+            channel.force(true);
+        }
+        channel.position(pos);
+        return ledger;
+    }
+
+    // Number of records read back when the ledger was opened.
+    public int getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    public void recordBet(long bettor, String horse, long stake) {
+        if (stake <= 0) throw new IllegalArgumentException("Bet amount must be positive");
+        commit(append(BET, withHorse(bettor, stake, horse)));
+    }
+
+    public void recordSettle(long bettor, long payout) {
+        ByteBuffer payload = ByteBuffer.allocate(16).putLong(bettor).putLong(payout);
+        commit(append(SETTLE, payload.flip()));
+    }
+
+    public void recordRefund(long bettor, String horse, long amount) {
+        commit(append(REFUND, withHorse(bettor, amount, horse)));
+    }
+
+    private static ByteBuffer withHorse(long bettor, long amount, String horse) {
+        byte[] name = horse.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) throw new IllegalArgumentException("Horse name is too long");
+        return ByteBuffer.allocate(18 + name.length)
+                .putLong(bettor).putLong(amount).putShort((short) name.length).put(name).flip();
+    }
+
+    // Net of stakes taken and payouts and refunds made, in cents.
+    public long getBalanceChange(long bettor) {
+        synchronized (appendLock) {
+            return balanceChanges.getOrDefault(bettor, 0L);
+        }
+    }
+
+    public List<OpenBet> getOpenBets(long bettor) {
+        synchronized (appendLock) {
+            List<OpenBet> open = new ArrayList<>();
+            openStakes.getOrDefault(bettor, Map.of()).forEach((horse, stake) -> open.add(new OpenBet(horse, stake)));
+            return open;
+        }
+    }
+
+    private long append(byte type, ByteBuffer payload) {
+        int length = payload.remaining();
+        synchronized (appendLock) {
+            if (failure != null) throw new UncheckedIOException("Bet ledger is unusable after a failed write", failure);
+            if (filling.remaining() < RECORD_HEADER + 1 + length) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(filling.capacity() * 2,
+                        filling.position() + RECORD_HEADER + 1 + length));
+                filling.flip();
+                larger.put(filling);
+                filling = larger;
+            }
+            crc.reset();
+            crc.update(type);
+            crc.update(payload.duplicate());
+            filling.putInt(length).putInt((int) crc.getValue()).put(type).put(payload.duplicate());
+            apply(type, payload);
+            return ++appended;
+        }
+    }
+
+    // Returns once record 'sequence' and everything before it is on disk.
+    private void commit(long sequence) {
+        if (durable >= sequence) return;
+        synchronized (commitLock) {
+            if (durable >= sequence) return;
+            if (failure != null) throw new UncheckedIOException("Bet ledger is unusable after a failed write", failure);
+            ByteBuffer batch;
+            long upTo;
+            synchronized (appendLock) {
+                batch = filling;
+                filling = spare;
+                upTo = appended;
+            }
+            batch.flip();
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException(e);
+            } finally {
+                batch.clear();
+                spare = batch;
+            }
+            durable = upTo;
+        }
+    }
+
+    private void apply(byte type, ByteBuffer payload) {
+        ByteBuffer in = payload.duplicate();
+        long bettor = in.getLong();
+        long amount = in.getLong();
+        switch (type) {
+            case BET:
+                balanceChanges.merge(bettor, -amount, Long::sum);
+                openStakes.computeIfAbsent(bettor, b -> new LinkedHashMap<>()).merge(readName(in), amount, Long::sum);
+                break;
+            case SETTLE:
+                balanceChanges.merge(bettor, amount, Long::sum);
+                openStakes.remove(bettor);
+                break;
+            case REFUND:
+                balanceChanges.merge(bettor, amount, Long::sum);
+                String horse = readName(in);
+                Map<String, Long> open = openStakes.get(bettor);
+                if (open != null) {
+                    open.computeIfPresent(horse, (h, stake) -> stake > amount ? stake - amount : null);
+                    if (open.isEmpty()) openStakes.remove(bettor);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown ledger record " + (char) type);
+        }
+    }
+
+    private static String readName(ByteBuffer in) {
+        byte[] name = new byte[in.getShort() & 0xFFFF];
+        in.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        long last;
+        synchronized (appendLock) {
+            last = appended;
+        }
+        commit(last);
+        channel.close();
+    }
+}
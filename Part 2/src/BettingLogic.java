@@ -1,32 +1,119 @@
 import java.util.HashMap;
 import java.util.Map;
 
+// One player's view of a TotePool. Other bettors can share the pool through
+// getPool(); the player's own stakes are kept here too, so a payout can be
+// worked out from the running totals without looking at any tickets.
+// With a ledger, every bet and payout is logged before it takes effect.
 public class BettingLogic {
-    private final Map<Horse2, Double> bets;
+    public static final long PLAYER = 0;
+
+    private final TotePool pool;
+    private final long bettor;
+    private final BetLedger ledger;
+    private final Map<Horse2, Long> stakes;
 
     public BettingLogic() {
-        bets = new HashMap<>();
+        this(new TotePool(), PLAYER, null);
     }
 
-    public void placeBet(Horse2 horse, double amount) {
-        if (horse == null) throw new IllegalArgumentException("No horse selected");
-        if (amount <= 0) throw new IllegalArgumentException("Bet amount must be positive");
-        bets.put(horse, bets.getOrDefault(horse, 0.0) + amount);
+    public BettingLogic(TotePool pool, long bettor, BetLedger ledger) {
+        this.pool = pool;
+        this.bettor = bettor;
+        this.ledger = ledger;
+        stakes = new HashMap<>();
+    }
+
+    // Puts the bets the ledger still has open back into the pool. Bets on
+    // horses no longer in the roster are refunded. Returns the bets restored.
+    public synchronized int restore(Horse2[] roster) {
+        if (ledger == null) return 0;
+        int restored = 0;
+        for (BetLedger.OpenBet bet : ledger.getOpenBets(bettor)) {
+            Horse2 horse = findByName(roster, bet.getHorse());
+            if (horse == null) {
+                ledger.recordRefund(bettor, bet.getHorse(), bet.getStake());
+                continue;
+            }
+            pool.placeBet(bettor, horse, bet.getStake());
+            stakes.merge(horse, bet.getStake(), Long::sum);
+            restored++;
+        }
+        return restored;
+    }
+
+    private static Horse2 findByName(Horse2[] roster, String name) {
+        for (Horse2 horse : roster) {
+            if (horse != null && horse.getName().equals(name)) return horse;
+        }
+        return null;
     }
 
-    public double calculateWinnings(Horse2 winner) {
-        if (winner == null || !bets.containsKey(winner)) return 0;
+    public TotePool getPool() {
+        return pool;
+    }
+
+    public synchronized void placeBet(Horse2 horse, double amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Bet amount must be positive");
+        if (horse == null) throw new IllegalArgumentException("No horse selected");
+        long cents = Money.toCents(amount);
+        if (ledger != null) {
+            ledger.recordBet(bettor, horse.getName(), cents);
+        }
+        try {
+            pool.placeBet(bettor, horse, cents);
+        } catch (RuntimeException e) {
+            if (ledger != null) {
+                ledger.recordRefund(bettor, horse.getName(), cents);
+            }
+            throw e;
+        }
+        stakes.merge(horse, cents, Long::sum);
 
-        double totalPool = bets.values().stream().mapToDouble(Double::doubleValue).sum();
-        double betOnWinner = bets.get(winner);
-        double odds = (totalPool - betOnWinner) / betOnWinner;
+        RaceEvents.BetPlaced event = new RaceEvents.BetPlaced();
+        if (event.isEnabled()) {
+            event.raceId = RaceEvents.currentRaceId();
+            event.bettor = bettor;
+            event.horse = horse.getName();
+            event.stake = cents;
+            event.commit();
+        }
+    }
+
+    public synchronized double calculateWinnings(Horse2 winner) {
+        if (winner == null || !stakes.containsKey(winner)) return 0;
+        return Money.toDollars(Money.scale(stakes.get(winner), pool.getNetPool(), pool.getHorseTotal(winner)));
+    }
 
-        return betOnWinner * (1 + odds);
+    public synchronized void clearBets() {
+        if (ledger != null) {
+            for (Map.Entry<Horse2, Long> stake : stakes.entrySet()) {
+                ledger.recordRefund(bettor, stake.getKey().getName(), stake.getValue());
+            }
+        }
+        pool.reset();
+        stakes.clear();
     }
 
-    public void clearBets() {
-        bets.clear();
+    // Pays out and clears the book in one step, so no bet can slip in between.
+    public synchronized double settle(Horse2 winner) {
+        RaceEvents.BetSettlement event = new RaceEvents.BetSettlement();
+        event.begin();
+        long winnings = pool.settle(winner).getPayoutTo(bettor);
+        if (ledger != null && !stakes.isEmpty()) {
+            ledger.recordSettle(bettor, winnings);
+        }
+        pool.reset();
+        stakes.clear();
+        if (event.shouldCommit()) {
+            event.raceId = RaceEvents.currentRaceId();
+            event.bettor = bettor;
+            event.horse = winner == null ? null : winner.getName();
+            event.payout = winnings;
+            event.commit();
+        }
+        return Money.toDollars(winnings);
     }
 
 
-}
\ No newline at end of file
+}
@@ -10,13 +10,24 @@ public class BettingPanel extends JPanel {
     private JSpinner amountSpinner;
     private JLabel moneyLabel;
     private JLabel statsLabel;  // New label for performance stats
+    private JLabel oddsLabel;
     private final BettingLogic bettingLogic;
-    private double playerMoney = 1000.0;
+    private final OddsService oddsService = new OddsService(RaceGUI::fallChance);
+    private static final double STARTING_MONEY = 1000.0;
+    private double playerMoney = STARTING_MONEY;
     private final DecimalFormat df = new DecimalFormat("0.00");
 
     public BettingPanel(RaceGUI raceGUI, Horse2[] horses) {
         this.raceGUI = raceGUI;
-        this.bettingLogic = new BettingLogic();
+        BetLedger ledger = raceGUI.getBetLedger();
+        this.bettingLogic = new BettingLogic(new TotePool(), BettingLogic.PLAYER, ledger);
+        if (ledger != null) {
+            int restored = bettingLogic.restore(horses);
+            if (restored > 0) {
+                System.out.println("Restored " + restored + " open bet(s) from the bet ledger");
+            }
+            playerMoney = STARTING_MONEY + Money.toDollars(ledger.getBalanceChange(BettingLogic.PLAYER));
+        }
         setLayout(new BorderLayout(5, 5));
         setBorder(BorderFactory.createTitledBorder("Betting Panel"));
         initializeComponents(horses);
@@ -42,10 +53,17 @@ public class BettingPanel extends JPanel {
         statsPanel.add(statsLabel);
         formPanel.add(statsPanel);
 
+        // Odds panel
+        JPanel oddsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        oddsLabel = new JLabel("Fair Odds: -");
+        oddsPanel.add(oddsLabel);
+        formPanel.add(oddsPanel);
+
         // Bet amount panel
         JPanel amountPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
         amountPanel.add(new JLabel("Amount: $"));
-        SpinnerNumberModel spinnerModel = new SpinnerNumberModel(10.0, 1.0, playerMoney, 1.0);
+        double maxBet = Math.max(1.0, playerMoney);
+        SpinnerNumberModel spinnerModel = new SpinnerNumberModel(Math.min(10.0, maxBet), 1.0, maxBet, 1.0);
         amountSpinner = new JSpinner(spinnerModel);
         JSpinner.NumberEditor editor = new JSpinner.NumberEditor(amountSpinner, "#,##0.00");
         amountSpinner.setEditor(editor);
@@ -79,6 +97,7 @@ public class BettingPanel extends JPanel {
         String selected = (String) horseCombo.getSelectedItem();
         if (selected == null || selected.isEmpty()) {
             statsLabel.setText("Win Ratio: - | Avg Speed: -");
+            oddsLabel.setText("Fair Odds: -");
             return;
         }
 
@@ -97,9 +116,35 @@ public class BettingPanel extends JPanel {
                     winRatio * 100,
                     avgSpeed);
             statsLabel.setText(stats);
+            updateOdds(selectedHorse);
         } else {
             statsLabel.setText("Win Ratio: - | Avg Speed: -");
+            oddsLabel.setText("Fair Odds: -");
+        }
+    }
+
+    private void updateOdds(Horse2 selectedHorse) {
+        Horse2[] horses = raceGUI.getHorses();
+        int lane = -1;
+        for (int i = 0; i < horses.length; i++) {
+            if (horses[i] == selectedHorse) {
+                lane = i;
+                break;
+            }
+        }
+        if (lane < 0) {
+            oddsLabel.setText("Fair Odds: -");
+            return;
         }
+
+        RaceOdds odds = oddsService.getOdds(horses, raceGUI.getCurrentWeather(), raceGUI.getRaceLength());
+        double fair = odds.getFairOdds(lane);
+        oddsLabel.setText(Double.isInfinite(fair) ? "Fair Odds: no chance"
+                : String.format("Fair Odds: %.2f (%.1f%% to win)", fair, odds.getWinProbability(lane) * 100));
+    }
+
+    public void refreshStats() {
+        updateHorseStats();
     }
 
     private void placeBetAction(ActionEvent e) {
@@ -152,16 +197,19 @@ public class BettingPanel extends JPanel {
         updateHorseStats();  // Update stats when horses list changes
     }
 
+    // May be called from the simulation thread; the balance and labels are
+    // only ever touched on the EDT.
     public void processWinnings(Horse2 winner) {
         if (winner != null) {
-            double winnings = bettingLogic.calculateWinnings(winner);
+            double winnings = bettingLogic.settle(winner);
             if (winnings > 0) {
-                playerMoney += winnings;
-                updateMoneyDisplay();
-                raceGUI.appendToInfoArea("You won $" + df.format(winnings) +
-                        " on " + winner.getName() + "!");
+                SwingUtilities.invokeLater(() -> {
+                    playerMoney += winnings;
+                    updateMoneyDisplay();
+                    raceGUI.appendToInfoArea("You won $" + df.format(winnings) +
+                            " on " + winner.getName() + "!");
+                });
             }
-            bettingLogic.clearBets();
         }
     }
 
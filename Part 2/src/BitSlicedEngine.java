@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+// Runs 64 races at once, one per bit of a long. Each horse's distance is kept
+// as bit-planes (plane b holds bit b of the distance in every race), and its
+// fallen and finished flags as masks, so a tick of the whole field is a few
+// word operations per horse.
+//
+// Moves and falls are drawn as masks. A horse moves in a race when a
+// uniform 32-bit draw is below its RaceState threshold; comparing the
+// threshold against 64 draws at once goes bit by bit from the top, taking a
+// fresh random long per bit, and stops once every race is settled, which is
+// after about log2(64) + 2 longs rather than 64. Each race follows the tick
+// kernel's rules exactly, with the same distribution as MonteCarloSimulator's
+// tick engine though a given seed gives different races. Per-race speed and
+// finish-tick statistics are not gathered.
+class BitSlicedEngine {
+    private final int lanes;
+    private final int raceLength;
+    private final int planes;
+    private final long[] moveThreshold;
+    private final long[] fallThreshold;
+    private final boolean[] present;
+
+    private final long[] distance;
+    private final long[] fallen;
+    private final long[] finished;
+
+    private final long[] wins;
+    private final long[] places;
+    private final long[] falls;
+    private long deadHeats;
+    private long noWinner;
+
+    BitSlicedEngine(RaceState template) {
+        lanes = template.getLanes();
+        raceLength = template.getRaceLength();
+        planes = 32 - Integer.numberOfLeadingZeros(raceLength);
+        moveThreshold = new long[lanes];
+        fallThreshold = new long[lanes];
+        present = new boolean[lanes];
+        for (int i = 0; i < lanes; i++) {
+            if (template.getHorse(i) != null) {
+                moveThreshold[i] = template.getMoveThreshold(i);
+                fallThreshold[i] = template.getFallThreshold(i);
+                // A horse that can neither move nor fall never counts as standing,
+                // so a race left with only such horses ends with no winner.
+                present[i] = moveThreshold[i] != 0 || fallThreshold[i] != 0;
+            }
+        }
+        distance = new long[lanes * planes];
+        fallen = new long[lanes];
+        finished = new long[lanes];
+        wins = new long[lanes];
+        places = new long[lanes];
+        falls = new long[lanes];
+    }
+
+    // Keeps all 64 slots busy: as soon as a race in one is over, the next
+    // race starts in its place, so a batch is never left ticking for a few
+    // long races.
+    void simulate(long races, RandomGenerator random, SimulationResult result) {
+        Arrays.fill(distance, 0);
+        Arrays.fill(fallen, 0);
+        Arrays.fill(finished, 0);
+        long active = races >= 64 ? -1L : (1L << races) - 1;
+        long remaining = races - Long.bitCount(active);
+        long decided = 0;   // first finisher found, or everyone stopped
+        long first = 0;     // at least one finisher
+        long second = 0;    // at least two finishers
+
+        while (active != 0) {
+            long firstBefore = first;
+            long standing = 0;
+            for (int i = 0; i < lanes; i++) {
+                if (!present[i]) continue;
+                long running = active & ~(fallen[i] | finished[i]);
+                if (running == 0) continue;
+
+                long moved = bernoulli(random, moveThreshold[i], running);
+                long home = moved == 0 ? 0 : advance(i, moved);
+                long fell = bernoulli(random, fallThreshold[i], running);
+                fallen[i] |= fell;
+                finished[i] |= home;
+                standing |= running & ~home & ~fell;
+
+                if (home != 0) {
+                    long won = home & ~first;
+                    long placed = home & first & ~second;
+                    wins[i] += Long.bitCount(won);
+                    places[i] += Long.bitCount(won) + Long.bitCount(placed);
+                    second |= home & first;
+                    first |= home;
+                }
+            }
+
+            deadHeats += Long.bitCount(second & ~firstBefore & active);
+            long decidedNow = active & ~decided & (first | ~standing);
+            if (decidedNow != 0) {
+                noWinner += Long.bitCount(decidedNow & ~first);
+                for (int i = 0; i < lanes; i++) {
+                    falls[i] += Long.bitCount(fallen[i] & decidedNow);
+                }
+                decided |= decidedNow;
+            }
+
+            // Like MonteCarloSimulator, a race runs on until its second
+            // finisher or until nobody is left standing.
+            long ended = active & (second | ~standing);
+            if (ended != 0) {
+                active &= ~ended;
+                long fresh = 0;
+                for (; remaining > 0 && ended != 0; remaining--) {
+                    long slot = ended & -ended;
+                    fresh |= slot;
+                    ended ^= slot;
+                }
+                if (fresh != 0) {
+                    clear(fresh);
+                    decided &= ~fresh;
+                    first &= ~fresh;
+                    second &= ~fresh;
+                    active |= fresh;
+                }
+            }
+        }
+        result.recordRaces(races, deadHeats, noWinner, wins, places, falls);
+    }
+
+    private void clear(long slots) {
+        for (int i = 0; i < distance.length; i++) {
+            distance[i] &= ~slots;
+        }
+        for (int i = 0; i < lanes; i++) {
+            fallen[i] &= ~slots;
+            finished[i] &= ~slots;
+        }
+    }
+
+    // Adds one to the lane's distance in the races in 'moved' and returns
+    // those in which it reached the finish.
+    private long advance(int lane, long moved) {
+        int base = lane * planes;
+        long carry = moved;
+        for (int b = 0; b < planes && carry != 0; b++) {
+            long plane = distance[base + b];
+            distance[base + b] = plane ^ carry;
+            carry &= plane;
+        }
+        long atFinish = moved;
+        for (int b = 0; b < planes && atFinish != 0; b++) {
+            long plane = distance[base + b];
+            atFinish &= (raceLength >>> b & 1) != 0 ? plane : ~plane;
+        }
+        return atFinish;
+    }
+
+    // For each race in 'candidates', whether a uniform 32-bit draw falls
+    // below the threshold (out of 2^32). Draws are compared a bit at a time
+    // from the top; a race is settled at the first bit where its draw and
+    // the threshold differ, and after the threshold's lowest set bit no
+    // race still level can end up below it.
+    static long bernoulli(RandomGenerator random, long threshold, long candidates) {
+        if (threshold >= 1L << 32) return candidates;
+        long below = 0;
+        long level = candidates;
+        int lowest = Long.numberOfTrailingZeros(threshold);
+        for (int b = 31; b >= lowest && level != 0; b--) {
+            long one = -(threshold >>> b & 1); // all ones where the threshold has a one
+            long draw = random.nextLong();
+            below |= level & ~draw & one;
+            level &= draw ^ ~one;
+        }
+        return below;
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.ConcurrentModificationException;
+
+// A fixed-capacity confidence history. When full it either overwrites the
+// oldest sample (a plain ring buffer) or, with downsampling, merges the
+// oldest half pairwise so that old races are kept at a coarser grain and
+// the newest ones stay exact. Either way existing samples move, so both
+// bump a version that the views from view() check on every read; plain
+// appends leave it alone, as they never touch the samples a view can see.
+public class BoundedConfidenceHistory implements ConfidenceHistory {
+    private final double[] values;
+    private final int[] races;
+    private final boolean downsample;
+    private int head;
+    private int size;
+    private long totalRaces;
+    private long version;
+
+    public BoundedConfidenceHistory(int capacity, boolean downsample) {
+        if (capacity < 4) throw new IllegalArgumentException("Capacity must be at least 4");
+        this.values = new double[capacity];
+        this.races = new int[capacity];
+        this.downsample = downsample;
+    }
+
+    public synchronized void add(double confidence) {
+        totalRaces++;
+        if (size == values.length) {
+            version++;
+            if (downsample) {
+                compactOldestHalf();
+            } else {
+                head = (head + 1) % values.length;
+                size--;
+            }
+        }
+        int slot = (head + size) % values.length;
+        values[slot] = confidence;
+        races[slot] = 1;
+        size++;
+    }
+
+    // Merges the oldest half into a quarter of the space, in place. The ring
+    // never wraps when downsampling, so the samples already start at index 0.
+    private void compactOldestHalf() {
+        int half = values.length / 2;
+        int out = 0;
+        for (int i = 0; i + 1 < half; i += 2) {
+            int merged = races[i] + races[i + 1];
+            values[out] = (values[i] * races[i] + values[i + 1] * races[i + 1]) / merged;
+            races[out] = merged;
+            out++;
+        }
+        for (int i = out * 2; i < size; i++) {
+            values[out] = values[i];
+            races[out] = races[i];
+            out++;
+        }
+        size = out;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    // The samples as they are now, read in place without copying. Samples
+    // added later are not part of it.
+    public synchronized ConfidenceHistory view() {
+        return new View(size, totalRaces, version);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized double get(int index) {
+        return values[slot(index)];
+    }
+
+    @Override
+    public synchronized int racesIn(int index) {
+        return races[slot(index)];
+    }
+
+    @Override
+    public synchronized long totalRaces() {
+        return totalRaces;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return (head + index) % values.length;
+    }
+
+    private class View implements ConfidenceHistory {
+        private final int size;
+        private final long totalRaces;
+        private final long version;
+
+        View(int size, long totalRaces, long version) {
+            this.size = size;
+            this.totalRaces = totalRaces;
+            this.version = version;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public double get(int index) {
+            synchronized (BoundedConfidenceHistory.this) {
+                return values[slot(index)];
+            }
+        }
+
+        @Override
+        public int racesIn(int index) {
+            synchronized (BoundedConfidenceHistory.this) {
+                return races[slot(index)];
+            }
+        }
+
+        @Override
+        public long totalRaces() {
+            return totalRaces;
+        }
+
+        // Unchanged since the view was taken, head included, so the outer
+        // slot() maps the index the same way it did then.
+        private int slot(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            if (BoundedConfidenceHistory.this.version != version) {
+                throw new ConcurrentModificationException("Confidence history changed while it was being read");
+            }
+            return BoundedConfidenceHistory.this.slot(index);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+// Read-only view of a horse's confidence after each race, oldest first.
+// Implementations read their own storage directly rather than copying it.
+// Views handed out by PerformanceMetrics keep the size they had when taken;
+// if older samples are compacted or dropped after that, reading the view
+// throws ConcurrentModificationException and a fresh one should be taken.
+public interface ConfidenceHistory {
+    ConfidenceHistory EMPTY = new ConfidenceHistory() {
+        public int size() { return 0; }
+        public double get(int index) { throw new IndexOutOfBoundsException(index); }
+        public int racesIn(int index) { throw new IndexOutOfBoundsException(index); }
+        public long totalRaces() { return 0; }
+    };
+
+    int size();
+
+    double get(int index);
+
+    // How many races sample 'index' averages; 1 unless old samples were downsampled.
+    int racesIn(int index);
+
+    // Every race recorded, including any whose samples have since been dropped.
+    long totalRaces();
+
+}
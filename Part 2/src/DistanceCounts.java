@@ -0,0 +1,59 @@
+import java.util.Arrays;
+
+// How many horses are at each distance, as a Fenwick tree indexed from the
+// finish backwards so that the number of horses ahead of a distance is a
+// prefix sum. Updates and queries are O(log raceLength); a horse moving up
+// one touches only the nodes below where the two update paths meet, which
+// is usually two or three.
+final class DistanceCounts {
+    private final int raceLength;
+    private final int[] tree;
+
+    DistanceCounts(int raceLength) {
+        this.raceLength = raceLength;
+        tree = new int[raceLength + 2];
+    }
+
+    DistanceCounts(DistanceCounts other) {
+        raceLength = other.raceLength;
+        tree = other.tree.clone();
+    }
+
+    void clear() {
+        Arrays.fill(tree, 0);
+    }
+
+    void add(int distance, int delta) {
+        for (int i = raceLength - distance + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // One horse from distance to distance + 1.
+    void moveUp(int distance) {
+        int up = raceLength - distance;
+        int down = up + 1;
+        while (up != down && Math.min(up, down) < tree.length) {
+            if (up < down) {
+                tree[up]++;
+                up += up & -up;
+            } else {
+                tree[down]--;
+                down += down & -down;
+            }
+        }
+    }
+
+    // Horses strictly further on than the given distance.
+    int countAhead(int distance) {
+        int sum = 0;
+        for (int i = raceLength - distance; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    int getRaceLength() {
+        return raceLength;
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.random.RandomGenerator;
+
+// Runs a RaceState from the times at which things happen rather than tick by
+// tick. A horse moves on each tick with a fixed chance and falls with another,
+// independently, so the tick of its L-th move (its finish) is negative
+// binomial and the tick of its fall is geometric; both are drawn when the
+// race starts. Whichever comes first goes into a heap ordered by (tick,
+// lane), and a whole race resolves in O(lanes × log lanes) whatever the track
+// length. Positions in between are filled in only when asked for: given its
+// finish tick, a horse's earlier moves are spread uniformly over the ticks
+// before it, so they can be drawn afterwards without changing anything.
+//
+// The rules match the tick kernel: lanes within a tick are settled in order,
+// and a horse that reaches the line on the tick it falls still finishes (and
+// is marked fallen). Outcomes have the same distribution as RaceState.tick,
+// though a given seed gives a different race.
+public class EventRaceEngine {
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    private final RaceState state;
+    private final int raceLength;
+    private final double[] moveChance;
+    private final double[] logStayUp;
+    private final int[] finishTick;
+    private final int[] fallTick;
+    // Latest tick at which the lane's position has been drawn, and that position.
+    private final int[] knownTick;
+    private final int[] knownDistance;
+    private final long[] heap;
+    private int size;
+    private RandomGenerator random;
+
+    public EventRaceEngine(RaceState state) {
+        this.state = state;
+        this.raceLength = state.getRaceLength();
+        int lanes = state.getLanes();
+        moveChance = new double[lanes];
+        logStayUp = new double[lanes];
+        finishTick = new int[lanes];
+        fallTick = new int[lanes];
+        knownTick = new int[lanes];
+        knownDistance = new int[lanes];
+        heap = new long[lanes];
+        refresh();
+    }
+
+    // Call after the state's move or fall chances change.
+    public void refresh() {
+        for (int i = 0; i < state.getLanes(); i++) {
+            moveChance[i] = state.getMoveChance(i);
+            logStayUp[i] = Math.log1p(-state.getFallChance(i));
+        }
+    }
+
+    public RaceState getState() {
+        return state;
+    }
+
+    // Resets the state and draws every horse's finish and fall ticks.
+    public void start(RandomGenerator random) {
+        this.random = random;
+        state.reset();
+        size = 0;
+        for (int i = 0; i < state.getLanes(); i++) {
+            knownTick[i] = 0;
+            knownDistance[i] = 0;
+            if (state.isStopped(i)) continue;
+
+            finishTick[i] = moveChance[i] <= 0 ? NEVER
+                    : clamp(raceLength + RaceRandom.negativeBinomial(random, raceLength, moveChance[i]));
+            fallTick[i] = logStayUp[i] == 0 ? NEVER
+                    : clamp((long) Math.floor(Math.log(1 - random.nextDouble()) / logStayUp[i]) + 1);
+
+            int first = Math.min(finishTick[i], fallTick[i]);
+            if (first != NEVER) push(first, i);
+        }
+    }
+
+    // Jumps to the next tick on which a horse finishes or falls and settles
+    // it. Returns the lowest lane to finish on that tick, or -1. Positions
+    // of horses still running are left as they were until syncDistances.
+    public int advance() {
+        if (size == 0) return -1;
+        int tick = (int) (heap[0] >>> 32);
+        state.beginTick(tick);
+        int first = -1;
+        while (size > 0 && (int) (heap[0] >>> 32) == tick) {
+            int lane = (int) heap[0];
+            pop();
+            if (finishTick[lane] == tick) {
+                state.moveTo(lane, raceLength);
+                knownTick[lane] = tick;
+                knownDistance[lane] = raceLength;
+                if (first < 0) first = lane;
+            }
+            if (fallTick[lane] == tick) {
+                state.fall(lane);
+            }
+        }
+        return first;
+    }
+
+    // Settles exactly one tick and moves every horse; for callers that draw
+    // each tick, like the live views.
+    public int step() {
+        syncDistances();
+        int tick = state.getTick() + 1;
+        state.beginTick(tick);
+        while (size > 0 && (int) (heap[0] >>> 32) <= tick) {
+            pop();
+        }
+
+        int first = -1;
+        for (int i = 0; i < state.getLanes(); i++) {
+            if (state.isStopped(i)) continue;
+            int distance = state.getDistance(i);
+            if (finishTick[i] == tick) {
+                state.moveTo(i, raceLength);
+                if (first < 0) first = i;
+            } else if (finishTick[i] != NEVER
+                    && random.nextDouble() * (finishTick[i] - tick) < raceLength - 1 - distance) {
+                state.moveForward(i);
+            }
+            knownTick[i] = tick;
+            knownDistance[i] = state.getDistance(i);
+            if (fallTick[i] == tick) {
+                state.fall(i);
+            }
+        }
+        return first;
+    }
+
+    // Whether any horse has yet to finish or fall.
+    public boolean hasPendingEvents() {
+        return size > 0;
+    }
+
+    // Draws the current position of every horse not yet placed, or for a
+    // fallen horse its position when it fell.
+    public void syncDistances() {
+        int now = state.getTick();
+        for (int i = 0; i < state.getLanes(); i++) {
+            if (state.getHorse(i) == null || knownDistance[i] == raceLength) continue;
+            int until = Math.min(now, fallTick[i]);
+            if (knownTick[i] >= until) continue;
+            if (finishTick[i] == NEVER) {
+                knownTick[i] = until;
+                continue;
+            }
+            // The L-1 moves before the finish sit uniformly among the ticks before it.
+            knownDistance[i] += RaceRandom.hypergeometric(random, finishTick[i] - 1 - knownTick[i],
+                    raceLength - 1 - knownDistance[i], until - knownTick[i]);
+            knownTick[i] = until;
+            state.placeAt(i, knownDistance[i]);
+        }
+    }
+
+    private static int clamp(long tick) {
+        return tick >= NEVER ? NEVER : (int) tick;
+    }
+
+    private void push(int tick, int lane) {
+        long event = (long) tick << 32 | lane;
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= event) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = event;
+    }
+
+    private void pop() {
+        long last = heap[--size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= last) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+    }
+}
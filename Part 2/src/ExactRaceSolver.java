@@ -0,0 +1,227 @@
+import java.awt.Color;
+import java.util.Arrays;
+
+// Computes race outcome probabilities exactly instead of by sampling.
+//
+// Each tick a running horse advances with probability p = confidence * speed
+// and, independently, falls with probability f. So the chance that it is
+// still running after t ticks is (1-f)^t * P(Binomial(t, p) < L), and it
+// finishes on tick t with probability P(Binomial(t-1, p) = L-1) * p * (1-f)^(t-1).
+// Both are stepped forward one tick at a time in O(1) per horse. The horses
+// are then combined tick by tick, using prefix and suffix products over the
+// lanes, which gives win, place, fall and dead-heat chances in O(horses * ticks).
+// Ties on a tick are broken by lane, as in Race2.raceWonBy, and "place" means
+// finishing first or second if the field were left running after the winner.
+public class ExactRaceSolver {
+    private static final double EPSILON = 1e-13;
+    private static final int MAX_TICKS = 10_000_000;
+
+    private ExactRaceSolver() {
+    }
+
+    public static RaceProbabilities solve(Horse2[] horses, Weather weather, int raceLength) {
+        return solve(new RaceState(horses, raceLength, weather, Race2::fallChance));
+    }
+
+    public static RaceProbabilities solve(RaceState state) {
+        int n = state.getLanes();
+        Horse2[] horses = new Horse2[n];
+        double[] moveChance = new double[n];
+        double[] fallChance = new double[n];
+        for (int i = 0; i < n; i++) {
+            horses[i] = state.getHorse(i);
+            moveChance[i] = state.getMoveChance(i);
+            fallChance[i] = state.getFallChance(i);
+        }
+        return solve(horses, moveChance, fallChance, state.getRaceLength());
+    }
+
+    // Lanes whose horse is null take no part in the race.
+    public static RaceProbabilities solve(Horse2[] horses, double[] moveChance, double[] fallChance, int raceLength) {
+        if (raceLength <= 0) throw new IllegalArgumentException("Race length must be positive");
+        int n = horses.length;
+        Runner[] runners = new Runner[n];
+        for (int i = 0; i < n; i++) {
+            runners[i] = horses[i] == null
+                    ? Runner.absent()
+                    : new Runner(moveChance[i], fallChance[i], raceLength);
+        }
+
+        double[] win = new double[n];
+        double[] place = new double[n];
+        double[] fall = new double[n];
+        double deadHeat = 0;
+
+        double[] finish = new double[n];
+        double[] cumPrev = new double[n];
+        double[] cumNow = new double[n];
+        double[] fallNow = new double[n];
+        double[] ahead0 = new double[n + 1];
+        double[] ahead1 = new double[n + 1];
+        double[] behind0 = new double[n + 1];
+        double[] behind1 = new double[n + 1];
+        double[] notHomeBefore = new double[n + 1];
+        double[] notHomeAfter = new double[n + 1];
+
+        int t = 0;
+        double stillRunning = 1;
+        while (stillRunning > EPSILON && t < MAX_TICKS) {
+            t++;
+            stillRunning = 0;
+            for (int i = 0; i < n; i++) {
+                Runner r = runners[i];
+                fallNow[i] = r.running * r.fallChance;
+                finish[i] = r.step();
+                cumPrev[i] = r.finished - finish[i];
+                cumNow[i] = r.finished;
+                stillRunning += r.running;
+            }
+
+            // Lanes before i beat it if they finish on or before this tick,
+            // lanes after i only if they finish strictly before it.
+            // Index 0/1 hold "nobody ahead" and "exactly one ahead".
+            ahead0[0] = 1;
+            ahead1[0] = 0;
+            notHomeBefore[0] = 1;
+            for (int j = 0; j < n; j++) {
+                double a = cumNow[j];
+                ahead0[j + 1] = ahead0[j] * (1 - a);
+                ahead1[j + 1] = ahead1[j] * (1 - a) + ahead0[j] * a;
+                notHomeBefore[j + 1] = notHomeBefore[j] * (1 - cumPrev[j]);
+            }
+            behind0[n] = 1;
+            behind1[n] = 0;
+            notHomeAfter[n] = 1;
+            for (int j = n - 1; j >= 0; j--) {
+                double b = cumPrev[j];
+                behind0[j] = behind0[j + 1] * (1 - b);
+                behind1[j] = behind1[j + 1] * (1 - b) + behind0[j + 1] * b;
+                notHomeAfter[j] = notHomeAfter[j + 1] * (1 - b);
+            }
+
+            // Polynomial in "finished on this tick" truncated after the linear term.
+            double p0 = 1;
+            double p1 = 0;
+            for (int i = 0; i < n; i++) {
+                double q0 = ahead0[i] * behind0[i + 1];
+                double q1 = ahead0[i] * behind1[i + 1] + ahead1[i] * behind0[i + 1];
+                win[i] += finish[i] * q0;
+                place[i] += finish[i] * (q0 + q1);
+                fall[i] += fallNow[i] * notHomeBefore[i] * notHomeAfter[i + 1];
+
+                double later = 1 - cumNow[i];
+                p1 = p1 * later + p0 * finish[i];
+                p0 = p0 * later;
+            }
+            // Everyone still out before this tick, minus nobody or exactly one finishing on it.
+            double severalHome = notHomeBefore[n] - p0 - p1;
+            if (severalHome > 0) {
+                deadHeat += severalHome;
+            }
+        }
+
+        double noWinner = 1;
+        double[] finishProbability = new double[n];
+        for (int i = 0; i < n; i++) {
+            finishProbability[i] = runners[i].finished;
+            noWinner *= 1 - runners[i].finished;
+        }
+        return new RaceProbabilities(horses.clone(), win, place, fall, finishProbability, deadHeat, noWinner, t);
+    }
+
+    // Index t holds the probability that the horse reaches the finish on tick t.
+    public static double[] finishTickDistribution(double moveChance, double fallChance, int raceLength) {
+        return distribution(moveChance, fallChance, raceLength, true);
+    }
+
+    // Index t holds the probability that the horse falls on tick t, before finishing.
+    public static double[] fallTickDistribution(double moveChance, double fallChance, int raceLength) {
+        return distribution(moveChance, fallChance, raceLength, false);
+    }
+
+    private static double[] distribution(double moveChance, double fallChance, int raceLength, boolean finish) {
+        Runner r = new Runner(moveChance, fallChance, raceLength);
+        double[] pmf = new double[raceLength + 1];
+        int t = 0;
+        while (r.running > EPSILON && t < MAX_TICKS) {
+            t++;
+            if (t == pmf.length) {
+                pmf = Arrays.copyOf(pmf, pmf.length * 2);
+            }
+            double falls = r.running * r.fallChance;
+            double home = r.step();
+            pmf[t] = finish ? home : falls;
+        }
+        return Arrays.copyOf(pmf, t + 1);
+    }
+
+    // One horse's finish-time process, advanced a tick per step().
+    private static final class Runner {
+        final double fallChance;
+        private final double moveChance;
+        private final int raceLength;
+        private final double logStay;
+        private double logAtEdge;   // log P(Binomial(t, p) = L-1)
+        private double notHome;     // P(Binomial(t, p) < L)
+        private double upright;     // (1-f)^t
+        private int t;
+        double running;
+        double finished;
+
+        Runner(double moveChance, double fallChance, int raceLength) {
+            this.moveChance = moveChance;
+            this.fallChance = fallChance;
+            this.raceLength = raceLength;
+            this.logStay = Math.log1p(-moveChance);
+            this.logAtEdge = moveChance > 0 ? (raceLength - 1) * Math.log(moveChance) : Double.NEGATIVE_INFINITY;
+            this.notHome = 1;
+            this.upright = 1;
+            this.running = moveChance > 0 || fallChance > 0 ? 1 : 0;
+        }
+
+        static Runner absent() {
+            Runner r = new Runner(0, 0, 1);
+            r.running = 0;
+            return r;
+        }
+
+        // Advances to tick t+1 and returns the probability of finishing on it.
+        double step() {
+            double home = 0;
+            if (running > 0) {
+                if (t >= raceLength - 1 && moveChance > 0) {
+                    double atEdge = Math.exp(logAtEdge);
+                    home = atEdge * moveChance * upright;
+                    notHome = Math.max(0, notHome - atEdge * moveChance);
+                }
+                t++;
+                if (t >= raceLength) {
+                    logAtEdge += Math.log(t) - Math.log(t - raceLength + 1) + logStay;
+                }
+                upright *= 1 - fallChance;
+                running = upright * notHome;
+                finished += home;
+            }
+            return home;
+        }
+    }
+
+    public static void main(String[] args) {
+        Weather weather = args.length > 0 ? Weather.fromLabel(args[0]) : Weather.SUNNY;
+        int raceLength = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Horse2[] field = {
+                new Horse2('A', "Thunder", 0.9, "Rectangle", Color.RED),
+                new Horse2('B', "Lightning", 0.8, "Circle", Color.BLUE),
+                new Horse2('C', "Storm", 0.7, "Triangle", Color.GREEN),
+                new Horse2('D', "Doom", 0.6, "Diamond", Color.YELLOW),
+                new Horse2('E', "Rain", 0.75, "Star", Color.MAGENTA)
+        };
+        long start = System.nanoTime();
+        RaceProbabilities odds = solve(field, weather, raceLength);
+        long micros = (System.nanoTime() - start) / 1000;
+
+        System.out.print(odds);
+        System.out.println(micros + " us");
+    }
+}
@@ -0,0 +1,4 @@
+@FunctionalInterface
+public interface FallRule {
+    double fallChance(double confidence, Weather weather);
+}
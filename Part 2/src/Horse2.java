@@ -8,9 +8,10 @@ public class Horse2 {
     private boolean horseHasFallen;
     private final String shape;
     private final Color color;
-    public double speedModifier = 1.0;
     private int racesWon = 0;
     private int racesParticipated = 0;
+    private RaceState raceState;
+    private int lane;
 
 
     public Horse2(char horseSymbol, String horseName, double horseConfidence, String shape, Color color) {
@@ -37,29 +38,22 @@ public class Horse2 {
             racesWon++;
         }
     }
-    public void applyWeatherEffect(String weather) {
-        switch (weather) {
-            case "Muddy":
-                this.speedModifier = 0.7;
-                this.horseConfidence = Math.max(0.1, this.horseConfidence - 0.1);
-                break;
-            case "Icy":
-                this.speedModifier = 0.5;
-                this.horseConfidence = Math.max(0.1, this.horseConfidence - 0.15);
-                break;
-            case "Rainy":
-                this.speedModifier = 0.8;
-                this.horseConfidence = Math.max(0.1, this.horseConfidence - 0.05);
-                break;
-            case "Sunny":
-            default:
-                this.speedModifier = 1.0;
-                break;
-        }
+    // Confidence as the weather leaves it; the horse's own confidence is unchanged.
+    public double getConfidence(Weather weather) {
+        return weather.adjustConfidence(horseConfidence);
+    }
+
+    void bind(RaceState state, int lane) {
+        this.raceState = state;
+        this.lane = lane;
     }
 
     public void fall() {
-        this.horseHasFallen = true;
+        if (raceState != null) {
+            raceState.fall(lane);
+        } else {
+            this.horseHasFallen = true;
+        }
     }
 
     public double getConfidence() {
@@ -67,7 +61,7 @@ public class Horse2 {
     }
 
     public int getDistanceTravelled() {
-        return distanceTravelled;
+        return raceState != null ? raceState.getDistance(lane) : distanceTravelled;
     }
 
     public String getName() {
@@ -87,16 +81,24 @@ public class Horse2 {
     }
 
     public void goBackToStart() {
-        this.distanceTravelled = 0;
-        this.horseHasFallen = false;
+        if (raceState != null) {
+            raceState.resetLane(lane);
+        } else {
+            this.distanceTravelled = 0;
+            this.horseHasFallen = false;
+        }
     }
 
     public boolean hasFallen() {
-        return horseHasFallen;
+        return raceState != null ? raceState.hasFallen(lane) : horseHasFallen;
     }
 
     public void moveForward() {
-        this.distanceTravelled++;
+        if (raceState != null) {
+            raceState.moveForward(lane);
+        } else {
+            this.distanceTravelled++;
+        }
     }
 
     public void setConfidence(double newConfidence) {
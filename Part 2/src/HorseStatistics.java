@@ -0,0 +1,36 @@
+// Distribution statistics for one horse, usually under one weather: the
+// average speed it managed in each race and the tick on which it finished,
+// for races it finished.
+public class HorseStatistics {
+    private final RunningStats speed = new RunningStats();
+    private final RunningStats finishTick = new RunningStats();
+
+    public void recordRace(double averageSpeed, int finishedOnTick) {
+        speed.add(averageSpeed);
+        if (finishedOnTick >= 0) {
+            finishTick.add(finishedOnTick);
+        }
+    }
+
+    public HorseStatistics merge(HorseStatistics other) {
+        speed.merge(other.speed);
+        finishTick.merge(other.finishTick);
+        return this;
+    }
+
+    public HorseStatistics copy() {
+        return new HorseStatistics().merge(this);
+    }
+
+    public long getRaces() {
+        return speed.getCount();
+    }
+
+    public RunningStats getSpeed() {
+        return speed;
+    }
+
+    public RunningStats getFinishTick() {
+        return finishTick;
+    }
+}
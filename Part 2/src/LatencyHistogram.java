@@ -0,0 +1,102 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear histogram of durations in nanoseconds, in the manner of
+// HdrHistogram: values below 128 get a bucket each, and every power of two
+// above that is split into 64 buckets, so any recorded value is known to
+// within 1/64 (about 1.6%) across the whole range of a long. Recording
+// never allocates and can be called from any thread: it is an atomic
+// increment of the value's bucket plus updates to striped count, sum and
+// max cells (LongAdder, LongAccumulator), so threads recording at the same
+// time only share a cache line when they hit the same bucket. snapshot()
+// gives a stable copy to read percentiles from.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // The largest long has its top bit at 62, so the last shift is 62 - SUB_BITS.
+    private static final int BUCKETS = (62 - SUB_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+    }
+
+    private LatencyHistogram(LatencyHistogram source) {
+        counts = new AtomicLongArray(BUCKETS);
+        // The count is taken from the copied buckets, so quantiles agree with them
+        // even if values were being recorded during the copy.
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = source.counts.get(i);
+            if (count != 0) {
+                counts.set(i, count);
+                total.add(count);
+            }
+        }
+        sum.add(source.sum.sum());
+        max.accumulate(source.max.get());
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        total.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public LatencyHistogram snapshot() {
+        return new LatencyHistogram(this);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // Upper end of the bucket holding the given quantile (0 to 1), or 0 if
+    // nothing has been recorded. Best read from a snapshot.
+    public long getValueAtQuantile(double q) {
+        long count = total.sum();
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestIn(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = bucket - (long) shift * SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    // "n=… mean=… p50=… p99=… max=…" in microseconds.
+    public String summary() {
+        return String.format("n=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                getCount(), getMean() / 1e3, getValueAtQuantile(0.5) / 1e3, getValueAtQuantile(0.9) / 1e3,
+                getValueAtQuantile(0.99) / 1e3, getMax() / 1e3);
+    }
+}
@@ -0,0 +1,221 @@
+import java.util.Arrays;
+
+// The horses still in a race (running or home), bucketed by distance. Each
+// bucket is a linked list of lanes in the order they reached that distance,
+// so the leader is the head of the highest occupied bucket and finishers
+// sit in the last bucket in finishing order. RaceState moves a horse up a
+// bucket as it moves and takes it off the board when it falls, both O(1).
+// A bitmap of occupied buckets finds the new top when the leading bucket
+// empties, one word per 64 units of track.
+//
+// Positions come from a DistanceCounts kept alongside: a horse's place is
+// one more than the number of horses further on, so horses level on
+// distance share a place, and it takes O(log raceLength) to find without
+// sorting anything.
+public class Leaderboard {
+    private static final int NONE = -1;
+
+    private final int raceLength;
+    private final int[] head;
+    private final int[] tail;
+    private final int[] count;
+    private final long[] occupied;
+    // Per lane: neighbours in its bucket and the bucket itself, NONE when off the board.
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucket;
+    private final DistanceCounts counts;
+    private int size;
+    private int top = NONE;
+
+    Leaderboard(int lanes, int raceLength) {
+        this.raceLength = raceLength;
+        head = new int[raceLength + 1];
+        tail = new int[raceLength + 1];
+        count = new int[raceLength + 1];
+        occupied = new long[(raceLength + 64) >>> 6];
+        next = new int[lanes];
+        prev = new int[lanes];
+        bucket = new int[lanes];
+        counts = new DistanceCounts(raceLength);
+        Arrays.fill(head, NONE);
+        Arrays.fill(tail, NONE);
+        Arrays.fill(bucket, NONE);
+    }
+
+    Leaderboard(Leaderboard other) {
+        raceLength = other.raceLength;
+        head = other.head.clone();
+        tail = other.tail.clone();
+        count = other.count.clone();
+        occupied = other.occupied.clone();
+        next = other.next.clone();
+        prev = other.prev.clone();
+        bucket = other.bucket.clone();
+        counts = new DistanceCounts(other.counts);
+        size = other.size;
+        top = other.top;
+    }
+
+    // Empties only the buckets in use, so it costs the field, not the track.
+    void clear() {
+        for (int lane = 0; lane < bucket.length; lane++) {
+            int distance = bucket[lane];
+            if (distance == NONE) continue;
+            head[distance] = NONE;
+            tail[distance] = NONE;
+            count[distance] = 0;
+            occupied[distance >>> 6] = 0;
+            counts.add(distance, -1);
+            bucket[lane] = NONE;
+        }
+        size = 0;
+        top = NONE;
+    }
+
+    // Puts the lane at the back of the given distance's bucket.
+    void add(int lane, int distance) {
+        link(lane, distance);
+        counts.add(distance, 1);
+    }
+
+    private void link(int lane, int distance) {
+        int last = tail[distance];
+        prev[lane] = last;
+        next[lane] = NONE;
+        if (last == NONE) {
+            head[distance] = lane;
+            occupied[distance >>> 6] |= 1L << distance;
+        } else {
+            next[last] = lane;
+        }
+        tail[distance] = lane;
+        bucket[lane] = distance;
+        count[distance]++;
+        size++;
+        if (distance > top) top = distance;
+    }
+
+    void remove(int lane) {
+        int distance = bucket[lane];
+        if (distance == NONE) return;
+        if (prev[lane] == NONE) head[distance] = next[lane]; else next[prev[lane]] = next[lane];
+        if (next[lane] == NONE) tail[distance] = prev[lane]; else prev[next[lane]] = prev[lane];
+        bucket[lane] = NONE;
+        size--;
+        counts.add(distance, -1);
+        if (--count[distance] == 0) {
+            occupied[distance >>> 6] &= ~(1L << distance);
+            if (distance == top) top = highestOccupied(distance);
+        }
+    }
+
+    // Moves a lane on the board to the back of another bucket.
+    void moveTo(int lane, int distance) {
+        if (bucket[lane] == NONE || bucket[lane] == distance) return;
+        remove(lane);
+        add(lane, distance);
+    }
+
+    // Moves a lane on the board up one bucket, the common case of a tick.
+    // Moving up never leaves the top to be found again.
+    void advance(int lane) {
+        int distance = bucket[lane];
+        if (distance == NONE) return;
+        int before = prev[lane];
+        int after = next[lane];
+        if (before == NONE) head[distance] = after; else next[before] = after;
+        if (after == NONE) tail[distance] = before; else prev[after] = before;
+        if (--count[distance] == 0) {
+            occupied[distance >>> 6] &= ~(1L << distance);
+        }
+        size--;
+        link(lane, distance + 1);
+        counts.moveUp(distance);
+    }
+
+    private int highestOccupied(int below) {
+        for (int word = below >>> 6; word >= 0; word--) {
+            long bits = occupied[word];
+            if (word == below >>> 6) bits &= (1L << below) - 1;
+            if (bits != 0) return word << 6 | (63 - Long.numberOfLeadingZeros(bits));
+        }
+        return NONE;
+    }
+
+    // Horses still in the race, finishers included.
+    public int size() {
+        return size;
+    }
+
+    // Lane of the horse in front (the winner, once there is one), or -1.
+    public int getLeader() {
+        return top == NONE ? NONE : head[top];
+    }
+
+    // Distance of the horse in front, or -1 with nobody left on the board.
+    public int getLeadingDistance() {
+        return top;
+    }
+
+    public boolean anyoneHome() {
+        return count[raceLength] > 0;
+    }
+
+    public boolean isOnBoard(int lane) {
+        return bucket[lane] != NONE;
+    }
+
+    public int countAt(int distance) {
+        return count[distance];
+    }
+
+    // First lane to reach the given distance among those still there, or -1.
+    public int firstAt(int distance) {
+        return head[distance];
+    }
+
+    // The lane behind this one in its bucket, or -1.
+    public int nextInBucket(int lane) {
+        return next[lane];
+    }
+
+    // The nearest occupied distance below the given one, or -1.
+    public int nextOccupiedBelow(int distance) {
+        return distance <= 0 ? NONE : highestOccupied(distance);
+    }
+
+    // Horses further on than the given distance.
+    public int countAhead(int distance) {
+        return counts.countAhead(distance);
+    }
+
+    // Current place of the lane, 1 for the leader, or -1 once it is out of
+    // the race. Horses level on distance share a place.
+    public int getPosition(int lane) {
+        return bucket[lane] == NONE ? NONE : 1 + counts.countAhead(bucket[lane]);
+    }
+
+    // How far the lane is behind the leader, or -1 once it is out of the race.
+    public int getGap(int lane) {
+        return bucket[lane] == NONE ? NONE : top - bucket[lane];
+    }
+
+    // Fills 'into' with up to k lanes from the front, furthest on first and
+    // level horses in the order they got there, and returns how many.
+    // Costs k plus the empty stretches of track skipped, not the field.
+    public int getTop(int k, int[] into) {
+        int n = 0;
+        for (int d = top; d >= 0 && n < k; d = nextOccupiedBelow(d)) {
+            for (int lane = head[d]; lane != NONE && n < k; lane = next[lane]) {
+                into[n++] = lane;
+            }
+        }
+        return n;
+    }
+
+    // A copy of the per-distance counts, for a snapshot to answer positions from.
+    DistanceCounts copyCounts() {
+        return new DistanceCounts(counts);
+    }
+}
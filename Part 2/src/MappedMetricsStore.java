@@ -0,0 +1,454 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Per-horse metrics kept in a memory-mapped file, so they survive restarts.
+//
+//   header   magic version end horseCount index weatherCount
+//   index    INDEX_SLOTS ints, open-addressed by name hash, each the offset of a record
+//   arena    horse records and history blocks, allocated from 'end' upwards
+//
+// When the index passes three quarters full a table twice the size is
+// allocated in the arena, prefixed by its slot count, the records are
+// rehashed into it and the header's index field is pointed at it; the old
+// table is left unused. Until then the field is 0, meaning the original
+// table after the header.
+//
+// A horse record is fixed width: name, race and win counts, average speed,
+// its confidence history block, and a best distance per weather, by
+// ordinal. The history block holds the samples and how many races each
+// covers. It starts at INITIAL_HISTORY samples and is moved to one twice
+// the size when full, up to HISTORY_CAPACITY; after that the oldest half is
+// averaged pairwise in place, as BoundedConfidenceHistory does in memory, so
+// the file grows with the number of horses and not with races.
+//
+// Files written with another weather count, and version 1 files (chained
+// history segments that grew without limit), are converted when opened;
+// the original is kept as <name>.bak until that has finished. Opening an
+// up-to-date file reads only the header; records are found through the
+// index when first asked for. Not thread-safe, as PerformanceMetrics
+// serializes access, except that history views may be read from any thread.
+public class MappedMetricsStore implements Closeable {
+    private static final int MAGIC = 0x48525031; // "HRP1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int INDEX_SLOTS = 1024;
+    private static final int ARENA_START = HEADER_SIZE + INDEX_SLOTS * 4;
+    private static final int INITIAL_SIZE = 64 * 1024;
+    private static final int WEATHERS = Weather.count();
+
+    private static final int MAX_NAME_BYTES = 64;
+    private static final int R_NAME_LENGTH = 0;
+    private static final int R_NAME = 4;
+    private static final int R_RACES = 68;
+    private static final int R_WINS = 72;
+    private static final int R_HISTORY_SIZE = 76;
+    private static final int R_AVERAGE_SPEED = 80;
+    private static final int R_HISTORY = 88;
+    private static final int R_HISTORY_CAPACITY = 92;
+    // Bumped when the history is downsampled, which moves existing samples.
+    private static final int R_HISTORY_VERSION = 96;
+    private static final int R_TRACK_RECORDS = 104;
+    private static final int RECORD_SIZE = R_TRACK_RECORDS + WEATHERS * 8;
+
+    static final int INITIAL_HISTORY = 8;
+    static final int HISTORY_CAPACITY = PerformanceMetrics.DEFAULT_HISTORY_CAPACITY;
+
+    // Version 1 records: four weather slots and a chain of history segments.
+    private static final int V1_TRACK_RECORDS = 88;
+    private static final int V1_WEATHERS = 4;
+    private static final int V1_FIRST_SEGMENT = 120;
+    private static final int V1_SEGMENT_SAMPLES = 32;
+    private static final int V1_S_NEXT = 0;
+    private static final int V1_S_COUNT = 4;
+    private static final int V1_S_SAMPLES = 8;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer map;
+    private final Map<String, Integer> records = new HashMap<>();
+    // Offset of the first index slot, and how many there are (a power of two).
+    private int indexBase;
+    private int indexSlots;
+
+    public MappedMetricsStore(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                create();
+            } else {
+                ByteBuffer header = read(0, 24);
+                int version = header.getInt(4);
+                if (header.getInt(0) != MAGIC || (version != 1 && version != VERSION)) {
+                    throw new IOException(file + " is not a metrics file this version can read");
+                }
+                if (version == VERSION && header.getInt(20) == WEATHERS) {
+                    map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                    openIndex();
+                } else {
+                    convert(file, version, header.getInt(20));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void create() throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_SIZE);
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putInt(8, ARENA_START);
+        map.putInt(12, 0);
+        map.putInt(16, 0);
+        map.putInt(20, WEATHERS);
+        openIndex();
+    }
+
+    private void openIndex() {
+        int index = map.getInt(16);
+        indexBase = index == 0 ? HEADER_SIZE : index + 4;
+        indexSlots = index == 0 ? INDEX_SLOTS : map.getInt(index);
+    }
+
+    // Read rather than mapped, so the file can be truncated afterwards.
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        return buffer;
+    }
+
+    // Rewrites an older file in this version's layout, in place.
+    private void convert(Path file, int version, int weathers) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to convert");
+        ByteBuffer old = read(0, (int) channel.size());
+        Path backup = file.resolveSibling(file.getFileName() + ".bak");
+        Files.write(backup, old.array());
+
+        channel.truncate(0);
+        create();
+        int index = old.getInt(16);
+        int base = index == 0 ? HEADER_SIZE : index + 4;
+        int slots = index == 0 ? INDEX_SLOTS : old.getInt(index);
+        for (int i = 0; i < slots; i++) {
+            int from = old.getInt(base + i * 4);
+            if (from != 0) {
+                copyRecord(old, from, version, weathers);
+            }
+        }
+        map.force();
+        Files.delete(backup);
+    }
+
+    private void copyRecord(ByteBuffer old, int from, int version, int weathers) {
+        byte[] key = new byte[old.getInt(from + R_NAME_LENGTH)];
+        old.get(from + R_NAME, key);
+        int record = findOrCreate(key);
+        map.putInt(record + R_RACES, old.getInt(from + R_RACES));
+        map.putInt(record + R_WINS, old.getInt(from + R_WINS));
+        map.putDouble(record + R_AVERAGE_SPEED, old.getDouble(from + R_AVERAGE_SPEED));
+
+        // Weathers are only ever added at the end, so slots line up by ordinal.
+        int trackRecords = version == 1 ? V1_TRACK_RECORDS : R_TRACK_RECORDS;
+        int copied = Math.min(version == 1 ? V1_WEATHERS : weathers, WEATHERS);
+        for (int w = 0; w < copied; w++) {
+            map.putDouble(record + R_TRACK_RECORDS + w * 8, old.getDouble(from + trackRecords + w * 8));
+        }
+
+        if (version == 1) {
+            int remaining = old.getInt(from + R_HISTORY_SIZE);
+            for (int segment = old.getInt(from + V1_FIRST_SEGMENT); segment != 0 && remaining > 0;
+                 segment = old.getInt(segment + V1_S_NEXT)) {
+                int count = Math.min(old.getInt(segment + V1_S_COUNT), V1_SEGMENT_SAMPLES);
+                for (int s = 0; s < count && remaining > 0; s++, remaining--) {
+                    appendHistory(record, old.getDouble(segment + V1_S_SAMPLES + s * 8), 1);
+                }
+            }
+        } else {
+            int block = old.getInt(from + R_HISTORY);
+            int capacity = old.getInt(from + R_HISTORY_CAPACITY);
+            for (int s = 0; s < old.getInt(from + R_HISTORY_SIZE); s++) {
+                appendHistory(record, old.getDouble(block + s * 8), old.getInt(block + capacity * 8 + s * 4));
+            }
+        }
+    }
+
+    public int getHorseCount() {
+        return map.getInt(12);
+    }
+
+    public int getRaces(String name) {
+        int record = find(name);
+        return record < 0 ? 0 : map.getInt(record + R_RACES);
+    }
+
+    public int getWins(String name) {
+        int record = find(name);
+        return record < 0 ? 0 : map.getInt(record + R_WINS);
+    }
+
+    public double getAverageSpeed(String name) {
+        int record = find(name);
+        return record < 0 ? 0 : map.getDouble(record + R_AVERAGE_SPEED);
+    }
+
+    public double getTrackRecord(String name, Weather weather) {
+        int record = find(name);
+        return record < 0 ? 0 : map.getDouble(record + R_TRACK_RECORDS + weather.ordinal() * 8);
+    }
+
+    // Reads straight from the mapped history block. The view keeps the size
+    // it had when taken, so samples appended later don't tear it; once the
+    // history is downsampled, reading it throws ConcurrentModificationException.
+    public ConfidenceHistory getHistory(String name) {
+        int record = find(name);
+        return record < 0 || map.getInt(record + R_HISTORY_SIZE) == 0 ? ConfidenceHistory.EMPTY
+                : new MappedHistory(record);
+    }
+
+    // Updates the horse's record in place, creating it on first sight.
+    public synchronized void recordRace(String name, boolean won, double speed, Weather weather, double distance,
+                                        double confidence) {
+        int record = findOrCreate(encodeName(name));
+        records.putIfAbsent(name, record);
+
+        int races = map.getInt(record + R_RACES);
+        double average = map.getDouble(record + R_AVERAGE_SPEED);
+        map.putDouble(record + R_AVERAGE_SPEED, average + (speed - average) / (races + 1));
+        map.putInt(record + R_RACES, races + 1);
+        if (won) {
+            map.putInt(record + R_WINS, map.getInt(record + R_WINS) + 1);
+        }
+
+        int at = record + R_TRACK_RECORDS + weather.ordinal() * 8;
+        map.putDouble(at, Math.max(map.getDouble(at), distance));
+
+        appendHistory(record, confidence, 1);
+    }
+
+    private void appendHistory(int record, double confidence, int races) {
+        int block = map.getInt(record + R_HISTORY);
+        int capacity = map.getInt(record + R_HISTORY_CAPACITY);
+        int size = map.getInt(record + R_HISTORY_SIZE);
+        if (size == capacity) {
+            if (capacity < HISTORY_CAPACITY) {
+                // The old block is left as it was, for any view still reading it.
+                int larger = capacity == 0 ? INITIAL_HISTORY : capacity * 2;
+                int moved = allocate(larger * 12);
+                for (int i = 0; i < size; i++) {
+                    map.putDouble(moved + i * 8, map.getDouble(block + i * 8));
+                    map.putInt(moved + larger * 8 + i * 4, map.getInt(block + capacity * 8 + i * 4));
+                }
+                map.putInt(record + R_HISTORY, moved);
+                map.putInt(record + R_HISTORY_CAPACITY, larger);
+                block = moved;
+                capacity = larger;
+            } else {
+                size = compactOldestHalf(block, capacity, size);
+                map.putInt(record + R_HISTORY_VERSION, map.getInt(record + R_HISTORY_VERSION) + 1);
+            }
+        }
+        map.putDouble(block + size * 8, confidence);
+        map.putInt(block + capacity * 8 + size * 4, races);
+        map.putInt(record + R_HISTORY_SIZE, size + 1);
+    }
+
+    // Merges the oldest half into a quarter of the block; returns the new size.
+    private int compactOldestHalf(int block, int capacity, int size) {
+        int counts = block + capacity * 8;
+        int half = capacity / 2;
+        int out = 0;
+        for (int i = 0; i + 1 < half; i += 2) {
+            int a = map.getInt(counts + i * 4);
+            int b = map.getInt(counts + (i + 1) * 4);
+            double merged = (map.getDouble(block + i * 8) * a + map.getDouble(block + (i + 1) * 8) * b) / (a + b);
+            map.putDouble(block + out * 8, merged);
+            map.putInt(counts + out * 4, a + b);
+            out++;
+        }
+        for (int i = out * 2; i < size; i++) {
+            map.putDouble(block + out * 8, map.getDouble(block + i * 8));
+            map.putInt(counts + out * 4, map.getInt(counts + i * 4));
+            out++;
+        }
+        return out;
+    }
+
+    // Forces outstanding changes to the storage device.
+    public void flush() {
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    private class MappedHistory implements ConfidenceHistory {
+        private final int record;
+        private final int block;
+        private final int capacity;
+        private final int size;
+        private final long totalRaces;
+        private final int version;
+
+        MappedHistory(int record) {
+            this.record = record;
+            block = map.getInt(record + R_HISTORY);
+            capacity = map.getInt(record + R_HISTORY_CAPACITY);
+            size = map.getInt(record + R_HISTORY_SIZE);
+            totalRaces = map.getInt(record + R_RACES);
+            version = map.getInt(record + R_HISTORY_VERSION);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public double get(int index) {
+            synchronized (MappedMetricsStore.this) {
+                check(index);
+                return map.getDouble(block + index * 8);
+            }
+        }
+
+        @Override
+        public int racesIn(int index) {
+            synchronized (MappedMetricsStore.this) {
+                check(index);
+                return map.getInt(block + capacity * 8 + index * 4);
+            }
+        }
+
+        @Override
+        public long totalRaces() {
+            return totalRaces;
+        }
+
+        private void check(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            if (map.getInt(record + R_HISTORY_VERSION) != version) {
+                throw new ConcurrentModificationException("Confidence history changed while it was being read");
+            }
+        }
+    }
+
+    private int find(String name) {
+        Integer cached = records.get(name);
+        if (cached != null) return cached;
+        int record = find(encodeName(name));
+        if (record >= 0) {
+            records.put(name, record);
+        }
+        return record;
+    }
+
+    private int find(byte[] key) {
+        int slot = indexSlot(key) & (indexSlots - 1);
+        for (int probe = 0; probe < indexSlots; probe++) {
+            int record = map.getInt(indexBase + slot * 4);
+            if (record == 0) return -1;
+            if (nameMatches(record, key)) return record;
+            slot = (slot + 1) & (indexSlots - 1);
+        }
+        return -1;
+    }
+
+    private int findOrCreate(byte[] key) {
+        int record = find(key);
+        if (record >= 0) return record;
+
+        // The index is kept at most three quarters full so probes stay short.
+        if (getHorseCount() >= indexSlots / 4 * 3) {
+            growIndex();
+        }
+        record = allocate(RECORD_SIZE);
+        map.putInt(record + R_NAME_LENGTH, key.length);
+        map.put(record + R_NAME, key);
+        insert(indexBase, indexSlots, record, key.length);
+        map.putInt(12, getHorseCount() + 1);
+        return record;
+    }
+
+    private void growIndex() {
+        int slots = indexSlots * 2;
+        if (slots > (Integer.MAX_VALUE - 4) / 4) {
+            throw new IllegalStateException("Metrics file is full (" + getHorseCount() + " horses)");
+        }
+        int table = allocate(4 + slots * 4);
+        map.putInt(table, slots);
+        for (int i = 0; i < indexSlots; i++) {
+            int record = map.getInt(indexBase + i * 4);
+            if (record != 0) {
+                insert(table + 4, slots, record, map.getInt(record + R_NAME_LENGTH));
+            }
+        }
+        map.putInt(16, table);
+        indexBase = table + 4;
+        indexSlots = slots;
+    }
+
+    private void insert(int base, int slots, int record, int nameLength) {
+        byte[] key = new byte[nameLength];
+        map.get(record + R_NAME, key);
+        int slot = indexSlot(key) & (slots - 1);
+        while (map.getInt(base + slot * 4) != 0) {
+            slot = (slot + 1) & (slots - 1);
+        }
+        map.putInt(base + slot * 4, record);
+    }
+
+    // Bump allocation from the end of the arena; the mapping grows by doubling.
+    private int allocate(int bytes) {
+        int at = map.getInt(8);
+        int end = at + bytes;
+        if (end > map.capacity()) {
+            long size = Math.max(end, (long) map.capacity() * 2);
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Metrics file has reached its maximum size");
+            }
+            try {
+                map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        map.putInt(8, end);
+        return at;
+    }
+
+    private boolean nameMatches(int record, byte[] key) {
+        if (map.getInt(record + R_NAME_LENGTH) != key.length) return false;
+        return map.slice(record + R_NAME, key.length).equals(ByteBuffer.wrap(key));
+    }
+
+    // The name's hash, to be masked to the size of the index.
+    private static int indexSlot(byte[] key) {
+        int hash = 0;
+        for (byte b : key) hash = 31 * hash + b;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Names longer than the record allows are cut, so only their prefix is compared.
+    private static byte[] encodeName(String name) {
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        return utf8.length <= MAX_NAME_BYTES ? utf8 : Arrays.copyOf(utf8, MAX_NAME_BYTES);
+    }
+}
@@ -0,0 +1,40 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Money is held as a whole number of cents so that pools add up exactly.
+// Amounts only become doubles again at the edges, for display and the UI.
+public final class Money {
+    public static final long CENTS_PER_DOLLAR = 100;
+
+    private Money() {
+    }
+
+    public static long toCents(double dollars) {
+        if (Double.isNaN(dollars) || Double.isInfinite(dollars)) {
+            throw new IllegalArgumentException("Not an amount of money: " + dollars);
+        }
+        return BigDecimal.valueOf(dollars).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    public static double toDollars(long cents) {
+        return cents / (double) CENTS_PER_DOLLAR;
+    }
+
+    public static String format(long cents) {
+        String sign = cents < 0 ? "-" : "";
+        long abs = Math.abs(cents);
+        return String.format("%s%d.%02d", sign, abs / CENTS_PER_DOLLAR, abs % CENTS_PER_DOLLAR);
+    }
+
+    // amount * numerator / denominator, rounded down, without overflowing
+    // on the way for any amounts that fit in a long.
+    static long scale(long amount, long numerator, long denominator) {
+        long high = Math.multiplyHigh(amount, numerator);
+        long low = amount * numerator;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return Math.floorDiv(low, denominator);
+        }
+        return BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(numerator))
+                .divide(BigDecimal.valueOf(denominator), 0, RoundingMode.FLOOR).longValueExact();
+    }
+}
@@ -0,0 +1,195 @@
+import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.random.RandomGenerator.SplittableGenerator;
+
+// Runs Race2's movement rules headlessly: no sleeps, no printing, and the
+// horses themselves are never touched, so the field can be reused afterwards.
+// After a winner is found the remaining horses keep running until the second
+// place is settled; falls are counted at the moment the race itself ends.
+// Horses that can neither move nor fall (confidence 0) never finish, so a
+// race ends with no winner once only they are left, and no race runs past
+// MAX_TICKS.
+public class MonteCarloSimulator {
+    private static final int RACES_PER_TASK = 4096;
+    private static final int MAX_TICKS = 10_000_000;
+
+    private final Horse2[] horses;
+    private final RaceState template;
+    private final int stuckHorses;
+    private final ForkJoinPool pool;
+    private boolean collectStatistics;
+    private boolean eventDriven;
+    private boolean bitSliced;
+
+    public MonteCarloSimulator(Horse2[] horses, Weather weather, int raceLength) {
+        this(horses, weather, raceLength, ForkJoinPool.commonPool());
+    }
+
+    public MonteCarloSimulator(Horse2[] horses, Weather weather, int raceLength, ForkJoinPool pool) {
+        this.horses = horses.clone();
+        this.template = new RaceState(horses, raceLength, weather, Race2::fallChance);
+        this.pool = pool;
+        int stuck = 0;
+        for (int i = 0; i < template.getLanes(); i++) {
+            if (template.getHorse(i) != null && template.getMoveThreshold(i) == 0
+                    && template.getFallThreshold(i) == 0) {
+                stuck++;
+            }
+        }
+        this.stuckHorses = stuck;
+    }
+
+    // Also gather per-lane speed and finish-tick distributions. Off by default
+    // as it costs more than the race itself.
+    public void setCollectStatistics(boolean collectStatistics) {
+        this.collectStatistics = collectStatistics;
+    }
+
+    // Resolve races with EventRaceEngine instead of the tick kernel. Same
+    // distribution, far fewer random draws on long tracks.
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    // Resolve races 64 at a time with BitSlicedEngine. Same distribution
+    // again, but no per-lane statistics.
+    public void setBitSliced(boolean bitSliced) {
+        this.bitSliced = bitSliced;
+    }
+
+    public SimulationResult run(long races) {
+        return run(races, RaceRandom.newSeed());
+    }
+
+    // The generator tree is split in task-creation order, not execution
+    // order, so the same seed gives the same result on any number of cores.
+    public SimulationResult run(long races, long seed) {
+        if (races <= 0) throw new IllegalArgumentException("Number of races must be positive");
+        if (bitSliced && collectStatistics) {
+            throw new IllegalStateException("The bit-sliced engine does not collect statistics");
+        }
+        return pool.invoke(new Batch(races, RaceRandom.fromSeed(seed)));
+    }
+
+    private SimulationResult simulate(long races, SplittableGenerator random) {
+        SimulationResult result = new SimulationResult(horses, collectStatistics);
+        if (bitSliced) {
+            new BitSlicedEngine(template).simulate(races, random, result);
+            return result;
+        }
+        RaceState state = template.copy();
+        EventRaceEngine engine = eventDriven ? new EventRaceEngine(state) : null;
+        boolean[] fallenAtEnd = new boolean[horses.length];
+        int[] distanceAtEnd = new int[horses.length];
+        int endTick = 0;
+
+        for (long r = 0; r < races; r++) {
+            if (engine != null) {
+                engine.start(random);
+            } else {
+                state.reset();
+            }
+            boolean raceOver = false;
+            boolean deadHeat = false;
+
+            while (state.getFinishers() < 2 && state.getRunning() > stuckHorses && state.getTick() < MAX_TICKS
+                    && (engine == null || engine.hasPendingEvents())) {
+                int firstHome = engine != null ? engine.advance() : state.tick(random);
+                if (!raceOver && (firstHome >= 0 || state.getRunning() == stuckHorses)) {
+                    raceOver = true;
+                    deadHeat = state.getFinishers() > 1;
+                    endTick = endRace(state, engine, result, fallenAtEnd, distanceAtEnd);
+                }
+            }
+            if (!raceOver) {
+                // Nobody left who could finish: the race has no winner.
+                endTick = endRace(state, engine, result, fallenAtEnd, distanceAtEnd);
+            }
+            if (result.collectsStatistics()) {
+                recordStatistics(state, result, distanceAtEnd, endTick);
+            }
+
+            int finishers = state.getFinishers();
+            result.recordRace(finishers > 0 ? state.getFinisher(0) : -1,
+                    finishers > 1 ? state.getFinisher(1) : -1,
+                    deadHeat, fallenAtEnd);
+        }
+        return result;
+    }
+
+    // Notes who had fallen when the race was decided, and with statistics
+    // on where everyone was; returns the tick it was decided on.
+    private static int endRace(RaceState state, EventRaceEngine engine, SimulationResult result,
+                               boolean[] fallenAtEnd, int[] distanceAtEnd) {
+        state.copyFallenTo(fallenAtEnd);
+        if (result.collectsStatistics()) {
+            if (engine != null) {
+                engine.syncDistances();
+            }
+            for (int i = 0; i < distanceAtEnd.length; i++) {
+                distanceAtEnd[i] = state.getDistance(i);
+            }
+        }
+        return state.getTick();
+    }
+
+    // Speed is measured up to the tick the race was decided; finish ticks
+    // include the runner-up, who may come home after that.
+    private void recordStatistics(RaceState state, SimulationResult result, int[] distanceAtEnd, int endTick) {
+        for (int i = 0; i < horses.length; i++) {
+            if (horses[i] != null) {
+                boolean finished = state.getDistance(i) == state.getRaceLength();
+                result.recordStatistics(i, endTick == 0 ? 0 : (double) distanceAtEnd[i] / endTick,
+                        finished ? state.getFinishTick(i) : -1);
+            }
+        }
+    }
+
+    private class Batch extends RecursiveTask<SimulationResult> {
+        private final long races;
+        private final SplittableGenerator random;
+
+        Batch(long races, SplittableGenerator random) {
+            this.races = races;
+            this.random = random;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (races <= RACES_PER_TASK) {
+                return simulate(races, random);
+            }
+            Batch left = new Batch(races / 2, random.split());
+            Batch right = new Batch(races - races / 2, random);
+            left.fork();
+            return right.compute().merge(left.join());
+        }
+    }
+
+    public static void main(String[] args) {
+        long races = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        Weather weather = args.length > 1 ? Weather.fromLabel(args[1]) : Weather.SUNNY;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : RaceRandom.newSeed();
+        int raceLength = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        Horse2[] field = {
+                new Horse2('A', "Thunder", 0.9, "Rectangle", Color.RED),
+                new Horse2('B', "Lightning", 0.8, "Circle", Color.BLUE),
+                new Horse2('C', "Storm", 0.7, "Triangle", Color.GREEN),
+                new Horse2('D', "Doom", 0.6, "Diamond", Color.YELLOW),
+                new Horse2('E', "Rain", 0.75, "Star", Color.MAGENTA)
+        };
+        MonteCarloSimulator simulator = new MonteCarloSimulator(field, weather, raceLength);
+        simulator.setCollectStatistics(Boolean.getBoolean("race.stats"));
+        simulator.setEventDriven("event".equals(System.getProperty("race.engine")));
+        simulator.setBitSliced("bitsliced".equals(System.getProperty("race.engine")));
+        long start = System.nanoTime();
+        SimulationResult result = simulator.run(races, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("Seed: " + seed);
+        System.out.print(result);
+        System.out.printf("%.2f s, %.0f races/s%n", seconds, races / seconds);
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Prices a field with ExactRaceSolver and keeps the most recent answers in an
+// LRU cache. Confidences are rounded to QUANTUM before both the lookup and the
+// solve, so two fields that share a key always get exactly the same odds.
+// Results are indexed by lane, since a cached entry can serve any field
+// whose lanes have the same confidences.
+public class OddsService {
+    private static final int QUANTUM = 1000;
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final FallRule fallRule;
+    private final double margin;
+    private final Map<Key, RaceOdds> cache;
+    private long hits;
+    private long misses;
+
+    public OddsService(FallRule fallRule) {
+        this(fallRule, 0.0, DEFAULT_CACHE_SIZE);
+    }
+
+    public OddsService(FallRule fallRule, double margin, int cacheSize) {
+        if (margin < 0) throw new IllegalArgumentException("Margin cannot be negative");
+        if (cacheSize <= 0) throw new IllegalArgumentException("Cache size must be positive");
+        this.fallRule = fallRule;
+        this.margin = margin;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RaceOdds> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public synchronized RaceOdds getOdds(Horse2[] horses, Weather weather, int raceLength) {
+        int[] confidence = new int[horses.length];
+        for (int i = 0; i < horses.length; i++) {
+            confidence[i] = horses[i] == null ? -1 : (int) Math.round(horses[i].getConfidence(weather) * QUANTUM);
+        }
+        Key key = new Key(confidence, weather, raceLength);
+
+        RaceOdds odds = cache.get(key);
+        if (odds != null) {
+            hits++;
+            return odds;
+        }
+        misses++;
+
+        double speed = weather.getSpeedModifier();
+        double[] moveChance = new double[horses.length];
+        double[] fallChance = new double[horses.length];
+        for (int i = 0; i < horses.length; i++) {
+            if (horses[i] != null) {
+                double c = (double) confidence[i] / QUANTUM;
+                moveChance[i] = c * speed;
+                fallChance[i] = fallRule.fallChance(c, weather);
+            }
+        }
+        odds = new RaceOdds(ExactRaceSolver.solve(horses, moveChance, fallChance, raceLength), margin);
+        cache.put(key, odds);
+        return odds;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class Key {
+        private final int[] confidence;
+        private final Weather weather;
+        private final int raceLength;
+        private final int hash;
+
+        Key(int[] confidence, Weather weather, int raceLength) {
+            this.confidence = confidence;
+            this.weather = weather;
+            this.raceLength = raceLength;
+            this.hash = 31 * (31 * Arrays.hashCode(confidence) + weather.hashCode()) + raceLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return raceLength == other.raceLength
+                    && weather == other.weather
+                    && Arrays.equals(confidence, other.confidence);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
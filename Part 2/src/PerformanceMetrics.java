@@ -1,31 +1,77 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class PerformanceMetrics {
-    private final Map<Horse2, List<Double>> confidenceHistory;
-    private final Map<Horse2, Double> averageSpeeds;
+    public static final int DEFAULT_HISTORY_CAPACITY = 256;
+    // Statistics key that covers every weather.
+    public static final String ALL_WEATHER = "All";
+
+    private final Map<Horse2, BoundedConfidenceHistory> confidenceHistory;
     private final Map<Horse2, Integer> winCounts;
     private final Map<Horse2, Integer> raceCounts;
     private final Map<String, Map<Horse2, Double>> trackRecords;
+    // Per horse, per weather and ALL_WEATHER. Kept in memory even when a store
+    // is set; the store only persists the summary figures.
+    private final Map<Horse2, Map<String, HorseStatistics>> statistics = new HashMap<>();
+    // When set, metrics live in the file instead, keyed by horse name.
+    private final MappedMetricsStore store;
+    private final int historyCapacity;
+    private final boolean downsampleHistory;
 
     public PerformanceMetrics() {
+        this(DEFAULT_HISTORY_CAPACITY, true);
+    }
+
+    // Each horse keeps at most historyCapacity confidence samples in memory. Once
+    // full, the oldest are averaged together if downsampleHistory, else dropped.
+    public PerformanceMetrics(int historyCapacity, boolean downsampleHistory) {
         confidenceHistory = new HashMap<>();
-        averageSpeeds = new HashMap<>();
         winCounts = new HashMap<>();
         raceCounts = new HashMap<>();
         trackRecords = new HashMap<>();
+        store = null;
+        this.historyCapacity = historyCapacity;
+        this.downsampleHistory = downsampleHistory;
+    }
+
+    // Keeps metrics in the given file, picking up whatever earlier runs recorded.
+    public PerformanceMetrics(Path file) throws IOException {
+        confidenceHistory = null;
+        winCounts = null;
+        raceCounts = null;
+        trackRecords = null;
+        store = new MappedMetricsStore(file);
+        historyCapacity = 0;
+        downsampleHistory = false;
     }
 
-    public void recordRace(Horse2[] horses, String trackCondition, int raceLength, int durationTicks) {
+    public synchronized void recordRace(Horse2[] horses, Weather weather, int raceLength, int durationTicks) {
+        String trackCondition = weather.getLabel();
+        RaceEvents.MetricsRecord event = new RaceEvents.MetricsRecord();
+        event.begin();
+        Horse2 winner = findWinner(horses, raceLength);
+        int recorded = 0;
+
         for (Horse2 horse : horses) {
             if (horse == null) continue;
-
-            confidenceHistory.computeIfAbsent(horse, e -> new ArrayList<>()).add(horse.getConfidence());
+            recorded++;
 
             double speed = (double) horse.getDistanceTravelled() / durationTicks;
-            averageSpeeds.merge(horse, speed, (old, newVal) -> (old + newVal) / 2);
+            int finishTick = horse.getDistanceTravelled() >= raceLength ? durationTicks : -1;
+            Map<String, HorseStatistics> byWeather = statistics.computeIfAbsent(horse, e -> new HashMap<>());
+            byWeather.computeIfAbsent(trackCondition, e -> new HorseStatistics()).recordRace(speed, finishTick);
+            byWeather.computeIfAbsent(ALL_WEATHER, e -> new HorseStatistics()).recordRace(speed, finishTick);
+
+            if (store != null) {
+                store.recordRace(horse.getName(), horse == winner, speed, weather,
+                        horse.getDistanceTravelled(), horse.getConfidence());
+                continue;
+            }
+
+            confidenceHistory.computeIfAbsent(horse, e -> new BoundedConfidenceHistory(historyCapacity, downsampleHistory))
+                    .add(horse.getConfidence());
 
             raceCounts.merge(horse, 1, Integer::sum);
 
@@ -33,10 +79,17 @@ public class PerformanceMetrics {
                     .merge(horse, (double) horse.getDistanceTravelled(), Math::max);
         }
 
-        Horse2 winner = findWinner(horses, raceLength);
-        if (winner != null) {
+        if (winner != null && store == null) {
             winCounts.merge(winner, 1, Integer::sum);
         }
+
+        if (event.shouldCommit()) {
+            event.raceId = RaceEvents.currentRaceId();
+            event.weather = trackCondition;
+            event.horses = recorded;
+            event.ticks = durationTicks;
+            event.commit();
+        }
     }
 
     private Horse2 findWinner(Horse2[] horses, int raceLength) {
@@ -48,21 +101,42 @@ public class PerformanceMetrics {
         return null;
     }
 
-    public double getWinRatio(Horse2 horse) {
+    public synchronized double getWinRatio(Horse2 horse) {
+        if (store != null) {
+            int races = store.getRaces(horse.getName());
+            return races == 0 ? 0 : (double) store.getWins(horse.getName()) / races;
+        }
         if (!raceCounts.containsKey(horse)) return 0;
         return (double) winCounts.getOrDefault(horse, 0) / raceCounts.get(horse);
     }
 
-    public double getAverageSpeed(Horse2 horse) {
-        return averageSpeeds.getOrDefault(horse, 0.0);
+    public synchronized double getAverageSpeed(Horse2 horse) {
+        if (store != null) return store.getAverageSpeed(horse.getName());
+        return getStatistics(horse, ALL_WEATHER).getSpeed().getMean();
     }
 
-    public List<Double> getConfidenceHistory(Horse2 horse) {
-        return confidenceHistory.getOrDefault(horse, new ArrayList<>());
+    // A copy, so it can be read while races keep being recorded.
+    public synchronized HorseStatistics getStatistics(Horse2 horse, String trackCondition) {
+        HorseStatistics stats = statistics.getOrDefault(horse, Map.of()).get(trackCondition);
+        return stats != null ? stats.copy() : new HorseStatistics();
     }
 
-    public double getTrackRecord(Horse2 horse, String trackCondition) {
-        return trackRecords.getOrDefault(trackCondition, new HashMap<>())
+    // A view of the history as it stands, read in place. Races recorded
+    // afterwards don't show up in it; if they compact the in-memory history,
+    // reading the view throws ConcurrentModificationException.
+    public synchronized ConfidenceHistory getConfidenceHistory(Horse2 horse) {
+        if (store != null) return store.getHistory(horse.getName());
+        BoundedConfidenceHistory history = confidenceHistory.get(horse);
+        return history != null ? history.view() : ConfidenceHistory.EMPTY;
+    }
+
+    public synchronized double getTrackRecord(Horse2 horse, Weather weather) {
+        if (store != null) return store.getTrackRecord(horse.getName(), weather);
+        return trackRecords.getOrDefault(weather.getLabel(), new HashMap<>())
                 .getOrDefault(horse, 0.0);
     }
-}
\ No newline at end of file
+
+    public synchronized void close() throws IOException {
+        if (store != null) store.close();
+    }
+}
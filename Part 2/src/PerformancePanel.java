@@ -2,7 +2,7 @@ import javax.swing.*;
 import javax.swing.BorderFactory;
 import java.awt.*;
 import java.text.DecimalFormat;
-import java.util.List;
+import java.util.ConcurrentModificationException;
 
 public class PerformancePanel extends JPanel {
     public final PerformanceMetrics metrics;
@@ -86,22 +86,58 @@ public class PerformancePanel extends JPanel {
 
         if (!"All".equals(trackCondition)) {
             sb.append(String.format("%-20s: %s\n", "Best " + trackCondition + " Distance",
-                    df.format(metrics.getTrackRecord(selectedHorse, trackCondition))));
+                    df.format(metrics.getTrackRecord(selectedHorse, Weather.fromLabel(trackCondition)))));
+        }
+
+        HorseStatistics stats = metrics.getStatistics(selectedHorse, trackCondition);
+        if (stats.getRaces() > 0) {
+            RunningStats speed = stats.getSpeed();
+            sb.append(String.format("%-20s: %s (sd %s)\n", "Speed Mean", df.format(speed.getMean()),
+                    df.format(speed.getStandardDeviation())));
+            sb.append(String.format("%-20s: %s / %s / %s\n", "Speed p10/p50/p90", df.format(speed.getQuantile(0.1)),
+                    df.format(speed.getMedian()), df.format(speed.getQuantile(0.9))));
+            RunningStats finish = stats.getFinishTick();
+            if (finish.getCount() > 0) {
+                sb.append(String.format("%-20s: %s (best %s, %d finishes)\n", "Median Finish Tick",
+                        df.format(finish.getMedian()), df.format(finish.getMin()), finish.getCount()));
+            }
         }
 
         sb.append("\nConfidence History:\n");
-        List<Double> confidenceHistory = metrics.getConfidenceHistory(selectedHorse);
-        if (confidenceHistory.isEmpty()) {
-            sb.append("No race history available\n");
-        } else {
-            for (int i = 0; i < confidenceHistory.size(); i++) {
-                sb.append(String.format("Race %-3d: %s\n", i + 1, df.format(confidenceHistory.get(i))));
+        int historyStart = sb.length();
+        while (true) {
+            try {
+                appendConfidenceHistory(sb, metrics.getConfidenceHistory(selectedHorse));
+                break;
+            } catch (ConcurrentModificationException e) {
+                // A race compacted the history mid-read; start again from a fresh view.
+                sb.setLength(historyStart);
             }
         }
 
         displayArea.setText(sb.toString());
     }
 
+    private void appendConfidenceHistory(StringBuilder sb, ConfidenceHistory confidenceHistory) {
+        int samples = confidenceHistory.size();
+        if (samples == 0) {
+            sb.append("No race history available\n");
+            return;
+        }
+        // Older samples may have been dropped or averaged over several races.
+        long covered = 0;
+        for (int i = 0; i < samples; i++) {
+            covered += confidenceHistory.racesIn(i);
+        }
+        long race = confidenceHistory.totalRaces() - covered + 1;
+        for (int i = 0; i < samples; i++) {
+            int races = confidenceHistory.racesIn(i);
+            String label = races == 1 ? "Race " + race : "Races " + race + "-" + (race + races - 1);
+            sb.append(String.format("%-12s: %s\n", label, df.format(confidenceHistory.get(i))));
+            race += races;
+        }
+    }
+
     public void updateHorses(Horse2[] horses) {
         horseSelector.removeAllItems();
         for (Horse2 horse : horses) {
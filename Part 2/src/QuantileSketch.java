@@ -0,0 +1,195 @@
+import java.util.Arrays;
+
+// A merging t-digest: a bounded set of weighted centroids, small near the
+// tails and larger in the middle, from which quantiles are interpolated.
+// Memory is bounded by the compression setting whatever the number of
+// samples; the arrays start small and only grow towards that bound as
+// samples arrive, so a sketch that has seen a few values costs well under a
+// kilobyte. Two sketches merge into one that describes both inputs, so
+// workers can each keep their own and combine them at the end.
+public class QuantileSketch {
+    private static final int INITIAL_BUFFER = 8;
+    private static final double[] NONE = new double[0];
+
+    private final double compression;
+    // Centroids after the last compression, sorted by mean, and spare arrays
+    // that merges are written into before the two swap.
+    private double[] means;
+    private double[] weights;
+    private double[] spareMeans;
+    private double[] spareWeights;
+    private int centroids;
+    private final int bufferLimit;
+    private double[] buffer;
+    private int buffered;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(100);
+    }
+
+    public QuantileSketch(double compression) {
+        if (compression < 10) throw new IllegalArgumentException("Compression must be at least 10");
+        this.compression = compression;
+        // Samples are folded in once the buffer holds four times the
+        // compression; the k1 scale keeps about compression / 2 centroids.
+        bufferLimit = (int) Math.ceil(compression) * 4;
+        // Centroid arrays are only made when the buffer is first folded in.
+        buffer = new double[INITIAL_BUFFER];
+        means = NONE;
+        weights = NONE;
+        spareMeans = NONE;
+        spareWeights = NONE;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) throw new IllegalArgumentException("Cannot add NaN");
+        buffer[buffered++] = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        totalWeight++;
+        if (buffered == buffer.length) {
+            if (buffer.length < bufferLimit) {
+                buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, bufferLimit));
+            } else {
+                flush();
+            }
+        }
+    }
+
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.compression != compression) {
+            throw new IllegalArgumentException("Sketches must share a compression setting to merge");
+        }
+        if (other.totalWeight == 0) return this;
+        flush();
+        other.flush();
+
+        mergeSorted(other.means, other.weights, other.centroids);
+        totalWeight += other.totalWeight;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+        return this;
+    }
+
+    public QuantileSketch copy() {
+        return new QuantileSketch(compression).merge(this);
+    }
+
+    public long getCount() {
+        return (long) totalWeight;
+    }
+
+    // Estimated value below which a fraction q of the samples fall; NaN if empty.
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        if (totalWeight == 0) return Double.NaN;
+        flush();
+        if (centroids == 1) return means[0];
+
+        double index = q * totalWeight;
+        if (index < weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+        double center = weights[0] / 2;
+        for (int i = 0; i + 1 < centroids; i++) {
+            double next = center + (weights[i] + weights[i + 1]) / 2;
+            if (index <= next) {
+                return means[i] + (means[i + 1] - means[i]) * (index - center) / (next - center);
+            }
+            center = next;
+        }
+        double last = weights[centroids - 1] / 2;
+        return means[centroids - 1] + (max - means[centroids - 1]) * Math.min(1, (index - center) / last);
+    }
+
+    public double getMin() {
+        return totalWeight == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return totalWeight == 0 ? Double.NaN : max;
+    }
+
+    int getCentroidCount() {
+        flush();
+        return centroids;
+    }
+
+    // Folds buffered samples into the centroids.
+    private void flush() {
+        if (buffered == 0) return;
+        Arrays.sort(buffer, 0, buffered);
+        mergeSorted(buffer, null, buffered);
+        buffered = 0;
+        compress();
+    }
+
+    // Merges a sorted run (weights of null meaning 1 each) into the centroids.
+    private void mergeSorted(double[] runMeans, double[] runWeights, int length) {
+        int total = centroids + length;
+        if (spareMeans.length < total) {
+            int capacity = Math.max(total, spareMeans.length * 2);
+            spareMeans = new double[capacity];
+            spareWeights = new double[capacity];
+        }
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < total; i++) {
+            if (b == length || (a < centroids && means[a] <= runMeans[b])) {
+                spareMeans[i] = means[a];
+                spareWeights[i] = weights[a++];
+            } else {
+                spareMeans[i] = runMeans[b];
+                spareWeights[i] = runWeights == null ? 1 : runWeights[b];
+                b++;
+            }
+        }
+        double[] swap = means;
+        means = spareMeans;
+        spareMeans = swap;
+        swap = weights;
+        weights = spareWeights;
+        spareWeights = swap;
+        centroids = total;
+    }
+
+    // One greedy pass over the sorted centroids, merging neighbours while the
+    // result stays within one unit of the k1 scale function.
+    private void compress() {
+        int out = 0;
+        double soFar = 0;
+        double limit = totalWeight * quantileAt(scaleAt(0) + 1);
+        double mean = means[0];
+        double weight = weights[0];
+        for (int i = 1; i < centroids; i++) {
+            if (soFar + weight + weights[i] <= limit) {
+                weight += weights[i];
+                mean += (means[i] - mean) * weights[i] / weight;
+            } else {
+                means[out] = mean;
+                weights[out] = weight;
+                out++;
+                soFar += weight;
+                limit = totalWeight * quantileAt(scaleAt(soFar / totalWeight) + 1);
+                mean = means[i];
+                weight = weights[i];
+            }
+        }
+        means[out] = mean;
+        weights[out] = weight;
+        centroids = out + 1;
+    }
+
+    private double scaleAt(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+    }
+
+    private double quantileAt(double k) {
+        if (k >= compression / 4) return 1;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+}
@@ -1,12 +1,23 @@
-import java.util.concurrent.TimeUnit;
 import java.lang.Math;
 import java.util.ArrayList;
+import java.util.random.RandomGenerator;
 
 public class Race2 {
     private final int raceLength;
     private final ArrayList<Horse2> horses;
-    private String currentWeather = "Sunny";
+    private Weather currentWeather = Weather.SUNNY;
     private Horse2 winner;
+    private Long fixedSeed;
+    private long lastSeed;
+    private RandomGenerator random = RaceRandom.fromSeed(RaceRandom.newSeed());
+    private int framesPerSecond = 10;
+    private ConsoleRenderer renderer;
+    private RaceLogWriter eventLog;
+    private RaceStreamServer stream;
+    private boolean eventDriven;
+    private String[] laneInfo;
+    private double[] infoConfidence;
+    private boolean[] infoFallen;
 
 
 
@@ -26,25 +37,31 @@ public class Race2 {
 
     public void moveHorse(Horse2 theHorse) {
         if (!theHorse.hasFallen()) {
-            if (Math.random() < theHorse.getConfidence()) {
-                if (Math.random() < theHorse.speedModifier) {
+            double confidence = theHorse.getConfidence(currentWeather);
+            if (random.nextDouble() < confidence) {
+                if (random.nextDouble() < currentWeather.getSpeedModifier()) {
                     theHorse.moveForward();
                 }
             }
 
-            double fallChance = 0.05 * theHorse.getConfidence() * theHorse.getConfidence();
-            if (currentWeather.equals("Muddy")) {
-                fallChance *= 1.5;
-            } else if (currentWeather.equals("Icy")) {
-                fallChance *= 2.0;
-            }
-
-            if (Math.random() < fallChance) {
+            if (random.nextDouble() < fallChance(confidence, currentWeather)) {
                 theHorse.fall();
             }
         }
     }
 
+    public static double fallChance(double confidence, Weather weather) {
+        double fallChance = 0.05 * confidence * confidence;
+        switch (weather) {
+            case MUDDY:
+                return fallChance * 1.5;
+            case ICY:
+                return fallChance * 2.0;
+            default:
+                return fallChance;
+        }
+    }
+
     public boolean raceWonBy(Horse2 theHorse) {
         return theHorse.getDistanceTravelled() == raceLength;
     }
@@ -53,43 +70,68 @@ public class Race2 {
         boolean finished = false;
         boolean allFallen = false;
 
-        for (Horse2 horse : horses) {
-            if (horse != null) {
-                horse.goBackToStart();
-            }
+        Horse2[] field = horses.toArray(new Horse2[0]);
+        RaceState state = new RaceState(field, raceLength, currentWeather, Race2::fallChance);
+        state.bindHorses();
+        lastSeed = fixedSeed != null ? fixedSeed : RaceRandom.newSeed();
+        random = RaceRandom.fromSeed(lastSeed);
+        EventRaceEngine engine = null;
+        if (eventDriven) {
+            engine = new EventRaceEngine(state);
+            engine.start(random);
+        }
+        winner = null;
+
+        int lanes = 0;
+        for (Horse2 horse : field) {
+            if (horse != null) lanes++;
+        }
+        renderer = new ConsoleRenderer("HORSE RACE SIMULATION", raceLength, lanes, framesPerSecond);
+        laneInfo = new String[lanes];
+        infoConfidence = new double[lanes];
+        infoFallen = new boolean[lanes];
+        if (eventLog != null) {
+            eventLog.raceStarted(state, currentWeather, lastSeed);
         }
+        if (stream != null) {
+            stream.raceStarted(state, currentWeather);
+        }
+        long raceId = RaceEvents.nextRaceId();
+        RaceEvents.raceStarted(raceId, state, currentWeather, lastSeed);
+        RaceEvents.RaceFinish finishEvent = new RaceEvents.RaceFinish();
+        finishEvent.begin();
 
         while (!finished && !allFallen) {
-            for (Horse2 horse : horses) {
-                if (horse != null) {
-                    moveHorse(horse);
-                }
+            long tickStart = Telemetry.start();
+            RaceEvents.RaceTick tickEvent = RaceEvents.tickStarted();
+            int firstHome = engine != null ? engine.step() : state.tick(random);
+            if (eventLog != null) {
+                eventLog.tick(state);
+            }
+            if (stream != null) {
+                stream.publish(state.snapshot());
             }
+            Telemetry.tick();
+            Telemetry.record(Telemetry.TICK_TIME, tickStart);
+            RaceEvents.tickFinished(tickEvent, raceId, state.getTick());
+            RaceEvents.horsesFell(raceId, state, currentWeather);
 
             printRace();
 
-            for (Horse2 horse : horses) {
-                if (horse != null && raceWonBy(horse)) {
-                    winner = horse;
-                    finished = true;
-                    break;
-                }
+            if (firstHome >= 0) {
+                winner = field[firstHome];
+                finished = true;
             }
 
-            allFallen = true;
-            for (Horse2 horse : horses) {
-                if (horse != null && !horse.hasFallen()) {
-                    allFallen = false;
-                    break;
-                }
-            }
+            allFallen = state.allFallen();
 
-            try {
-                TimeUnit.MILLISECONDS.sleep(100);
-            } catch(Exception e) {
-                throw new RuntimeException(e);
-            }
+            renderer.awaitNextFrame();
+        }
+        if (eventLog != null) {
+            eventLog.raceFinished(state);
         }
+        Telemetry.raceFinished();
+        RaceEvents.raceFinished(finishEvent, raceId, winner, currentWeather, state.getTick());
 
         updateConfidences();
         displayFinalResults();
@@ -116,6 +158,48 @@ public class Race2 {
         return raceLength;
     }
 
+    public void setWeather(Weather weather) {
+        this.currentWeather = weather;
+    }
+
+    public Weather getWeather() {
+        return currentWeather;
+    }
+
+    // Every subsequent race starts from this seed and so replays identically.
+    public void setSeed(long seed) {
+        this.fixedSeed = seed;
+    }
+
+    public void clearSeed() {
+        this.fixedSeed = null;
+    }
+
+    public long getLastSeed() {
+        return lastSeed;
+    }
+
+    public void setFramesPerSecond(int framesPerSecond) {
+        if (framesPerSecond <= 0) throw new IllegalArgumentException("Frame rate must be positive");
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    // Draw each horse's finish and fall up front (EventRaceEngine) rather than
+    // rolling for every horse on every tick. Same odds, different races per seed.
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    // Races are appended to this log as they run; null turns logging off.
+    public void setEventLog(RaceLogWriter eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    // Streams every tick to the server's viewers.
+    public void setStreamServer(RaceStreamServer stream) {
+        this.stream = stream;
+    }
+
     private void setConfidenceLosers(Horse2 horse) {
         double currentConfidence = horse.getConfidence();
         double penalty = horse.hasFallen() ? 0.15 : 0.05;
@@ -144,46 +228,27 @@ public class Race2 {
     }
 
     private void printRace() {
-        System.out.print('\u000C');
-        System.out.println("HORSE RACE SIMULATION");
-        multiplePrint('=', raceLength + 30);
-        System.out.println();
-
+        int row = 0;
         for (Horse2 horse : horses) {
             if (horse != null) {
-                printLaneWithInfo(horse);
-                System.out.println();
+                char symbol = horse.hasFallen() ? '⌢' : horse.getSymbol();
+                renderer.setLane(row, horse.getDistanceTravelled(), symbol, laneInfo(row, horse));
+                row++;
             }
         }
-
-        multiplePrint('=', raceLength + 30);
-        System.out.println();
-    }
-
-    private void printLaneWithInfo(Horse2 theHorse) {
-        int spacesBefore = theHorse.getDistanceTravelled();
-        int spacesAfter = raceLength - theHorse.getDistanceTravelled();
-
-        System.out.print('|');
-        multiplePrint(' ', spacesBefore);
-
-        if(theHorse.hasFallen()) {
-            System.out.print('⌢');
-        } else {
-            System.out.print(theHorse.getSymbol());
-        }
-
-        multiplePrint(' ', spacesAfter);
-        System.out.print('|');
-
-        String status = theHorse.hasFallen() ? " (Fallen)" : "";
-        System.out.print("  " + theHorse.getSymbol() + ": " + theHorse.getName() +
-                " (Conf: " + String.format("%.2f", theHorse.getConfidence()) + ")" + status);
+        renderer.render();
     }
 
-    private void multiplePrint(char aChar, int times) {
-        for (int i = 0; i < times; i++) {
-            System.out.print(aChar);
+    // Rebuilt only when the confidence or fallen state shown in it changes.
+    private String laneInfo(int row, Horse2 theHorse) {
+        if (laneInfo[row] == null || infoConfidence[row] != theHorse.getConfidence()
+                || infoFallen[row] != theHorse.hasFallen()) {
+            infoConfidence[row] = theHorse.getConfidence();
+            infoFallen[row] = theHorse.hasFallen();
+            String status = theHorse.hasFallen() ? " (Fallen)" : "";
+            laneInfo[row] = theHorse.getSymbol() + ": " + theHorse.getName() +
+                    " (Conf: " + String.format("%.2f", theHorse.getConfidence()) + ")" + status;
         }
+        return laneInfo[row];
     }
-}
\ No newline at end of file
+}
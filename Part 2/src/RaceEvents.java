@@ -0,0 +1,191 @@
+import java.util.concurrent.atomic.AtomicLong;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder events for the race lifecycle, so a recording shows races,
+// ticks, falls, bets and settlements alongside GC and lock activity. They
+// all carry the id of the race they belong to; bets and metrics, which are
+// not tied to a race by their callers, take the most recently started one.
+// Events cost a check of isEnabled() when no recording is running; tick
+// events, being the most frequent, are not even allocated then.
+public final class RaceEvents {
+    private static final AtomicLong RACE_IDS = new AtomicLong();
+    private static final EventType TICK_TYPE = EventType.getEventType(RaceTick.class);
+    private static volatile long currentRace;
+
+    private RaceEvents() {
+    }
+
+    public static long nextRaceId() {
+        long id = RACE_IDS.incrementAndGet();
+        currentRace = id;
+        return id;
+    }
+
+    public static long currentRaceId() {
+        return currentRace;
+    }
+
+    static void raceStarted(long raceId, RaceState state, Weather weather, long seed) {
+        RaceStart event = new RaceStart();
+        if (!event.isEnabled()) return;
+        event.raceId = raceId;
+        event.weather = weather.getLabel();
+        event.raceLength = state.getRaceLength();
+        event.horses = state.getRunning();
+        event.seed = seed;
+        event.commit();
+    }
+
+    // Begins timing a tick, or returns null if no recording wants tick events.
+    static RaceTick tickStarted() {
+        if (!TICK_TYPE.isEnabled()) return null;
+        RaceTick event = new RaceTick();
+        event.begin();
+        return event;
+    }
+
+    static void tickFinished(RaceTick event, long raceId, int tick) {
+        if (event == null || !event.shouldCommit()) return;
+        event.raceId = raceId;
+        event.tick = tick;
+        event.commit();
+    }
+
+    // One event per horse that fell on the state's latest tick.
+    static void horsesFell(long raceId, RaceState state, Weather weather) {
+        if (!state.anyFellThisTick()) return;
+        for (int i = state.nextFell(0); i >= 0; i = state.nextFell(i + 1)) {
+            HorseFall event = new HorseFall();
+            if (!event.isEnabled()) return;
+            event.raceId = raceId;
+            event.horse = state.getHorse(i).getName();
+            event.weather = weather.getLabel();
+            event.tick = state.getTick();
+            event.commit();
+        }
+    }
+
+    static void raceFinished(RaceFinish event, long raceId, Horse2 winner, Weather weather, int ticks) {
+        if (!event.shouldCommit()) return;
+        event.raceId = raceId;
+        event.horse = winner == null ? null : winner.getName();
+        event.weather = weather.getLabel();
+        event.ticks = ticks;
+        event.commit();
+    }
+
+    @Name("horseracing.RaceStart")
+    @Label("Race Start")
+    @Category({"Horse Racing", "Race"})
+    @StackTrace(false)
+    public static class RaceStart extends Event {
+        @Label("Race Id")
+        public long raceId;
+        @Label("Weather")
+        public String weather;
+        @Label("Race Length")
+        public int raceLength;
+        @Label("Horses")
+        public int horses;
+        @Label("Seed")
+        public long seed;
+    }
+
+    @Name("horseracing.RaceTick")
+    @Label("Race Tick")
+    @Category({"Horse Racing", "Race"})
+    @Description("Time spent simulating one tick")
+    @StackTrace(false)
+    public static class RaceTick extends Event {
+        @Label("Race Id")
+        public long raceId;
+        @Label("Tick")
+        public int tick;
+    }
+
+    @Name("horseracing.HorseFall")
+    @Label("Horse Fall")
+    @Category({"Horse Racing", "Race"})
+    @StackTrace(false)
+    public static class HorseFall extends Event {
+        @Label("Race Id")
+        public long raceId;
+        @Label("Horse")
+        public String horse;
+        @Label("Weather")
+        public String weather;
+        @Label("Tick")
+        public int tick;
+    }
+
+    @Name("horseracing.RaceFinish")
+    @Label("Race Finish")
+    @Category({"Horse Racing", "Race"})
+    @Description("Spans the race from start to finish")
+    @StackTrace(false)
+    public static class RaceFinish extends Event {
+        @Label("Race Id")
+        public long raceId;
+        @Label("Winner")
+        public String horse;
+        @Label("Weather")
+        public String weather;
+        @Label("Ticks")
+        public int ticks;
+    }
+
+    @Name("horseracing.BetPlaced")
+    @Label("Bet Placed")
+    @Category({"Horse Racing", "Betting"})
+    @StackTrace(false)
+    public static class BetPlaced extends Event {
+        @Label("Race Id")
+        public long raceId;
+        @Label("Bettor")
+        public long bettor;
+        @Label("Horse")
+        public String horse;
+        @Label("Stake")
+        @Description("In cents")
+        public long stake;
+    }
+
+    @Name("horseracing.BetSettlement")
+    @Label("Bet Settlement")
+    @Category({"Horse Racing", "Betting"})
+    @Description("Paying out a bettor when a race is over")
+    @StackTrace(false)
+    public static class BetSettlement extends Event {
+        @Label("Race Id")
+        public long raceId;
+        @Label("Bettor")
+        public long bettor;
+        @Label("Winner")
+        public String horse;
+        @Label("Payout")
+        @Description("In cents")
+        public long payout;
+    }
+
+    @Name("horseracing.MetricsRecord")
+    @Label("Metrics Record")
+    @Category({"Horse Racing", "Metrics"})
+    @Description("Recording a race's results in PerformanceMetrics")
+    @StackTrace(false)
+    public static class MetricsRecord extends Event {
+        @Label("Race Id")
+        public long raceId;
+        @Label("Weather")
+        public String weather;
+        @Label("Horses")
+        public int horses;
+        @Label("Duration Ticks")
+        public int ticks;
+    }
+}
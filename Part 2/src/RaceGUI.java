@@ -1,33 +1,73 @@
 import javax.swing.*;
 import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
 
 
 public class RaceGUI {
     private Race2 race;
     private Horse2[] horses;
+    private RaceState raceState;
+    private RandomGenerator raceRandom;
+    private long raceSeed;
+    private long raceId;
+    private RaceEvents.RaceFinish raceFinishEvent;
     private JFrame frame;
     private RacePanel racePanel;
     private JButton startButton;
+    private JButton replayButton;
     private JTextArea infoArea;
     private Timer animationTimer;
-    private Timer raceTimer;
-    private boolean raceInProgress = false;
-    private final int MAX_HORSES = 10;
-    private JComboBox<String> weatherCombo;
+    // The race itself ticks here, away from the EDT; the panel paints from
+    // the snapshots it publishes.
+    private final ScheduledExecutorService simulationThread = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "race-simulation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Only touched on the simulation thread.
+    private ScheduledFuture<?> raceTask;
+    private volatile Weather raceWeather;
+    private static final int TICK_MILLIS = 100;
+    // Multiples of the normal tick rate; 0 resolves the race at once.
+    private static final String[] SPEED_OPTIONS = {"1x", "4x", "16x", "Instant"};
+    private static final int[] SPEED_FACTORS = {1, 4, 16, 0};
+    private volatile int raceSpeed = 1;
+    private JComboBox<String> speedCombo;
+    private volatile boolean raceInProgress = false;
+    private ByteArrayOutputStream raceLogBytes;
+    private RaceLogWriter raceLog;
+    private volatile RaceRecording lastRecording;
+    // The field starts with room for this many and doubles when full.
+    private static final int INITIAL_LANES = 10;
+    private JComboBox<Weather> weatherCombo;
     private static final int RACE_LENGTH = 50;
     private AddHorsePanel addHorsePanel;
 
     private BettingPanel bettingPanel;
     public PerformanceMetrics performanceMetrics;
+    private final BetLedger betLedger = openBetLedger();
+    private final RaceStreamServer raceStream = openRaceStream();
     private PerformancePanel performancePanel;
     private int raceDurationTicks = 0;
+    // Lane last announced as leading; only touched on the simulation thread.
+    private int announcedLeader = -1;
 
 
 
 
 
     public static final String[] SHAPE_OPTIONS = {"Rectangle", "Circle", "Triangle", "Diamond", "Star"};
-    public static final String[] WEATHER_OPTIONS = {"Sunny", "Rainy", "Muddy", "Icy"};
     public static final Color[] COLOR_OPTIONS = {
             Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW,
             Color.MAGENTA, Color.CYAN, Color.ORANGE, Color.PINK
@@ -41,22 +81,82 @@ public class RaceGUI {
         return horses;
     }
 
+    public Weather getCurrentWeather() {
+        return racePanel.getCurrentWeather();
+    }
+
+    public int getRaceLength() {
+        return RACE_LENGTH;
+    }
+
     public RaceGUI() {
-        performanceMetrics = new PerformanceMetrics();
+        performanceMetrics = openPerformanceMetrics();
         racePanel = new RacePanel(null, null);
         initializeRaceWithDefaults();
 
     }
 
+    // Metrics persist in race-metrics.dat (or -Drace.metrics.file) between runs;
+    // if the file can't be opened they are kept for this session only.
+    private static PerformanceMetrics openPerformanceMetrics() {
+        Path file = Path.of(System.getProperty("race.metrics.file", "race-metrics.dat"));
+        try {
+            return new PerformanceMetrics(file);
+        } catch (IOException e) {
+            System.err.println("Could not open " + file + ", metrics will not be saved: " + e.getMessage());
+            return new PerformanceMetrics();
+        }
+    }
+
+    // Bets and payouts are logged to bets.wal (or -Drace.ledger.file) so the
+    // balance and any open bets survive a crash; without it betting still works.
+    private static BetLedger openBetLedger() {
+        Path file = Path.of(System.getProperty("race.ledger.file", "bets.wal"));
+        try {
+            return BetLedger.open(file);
+        } catch (IOException e) {
+            System.err.println("Could not open " + file + ", bets will not be saved: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // With -Drace.stream.port, live races are streamed to viewers on that
+    // port, on loopback unless -Drace.stream.host names another interface.
+    private static RaceStreamServer openRaceStream() {
+        Integer port = Integer.getInteger("race.stream.port");
+        if (port == null) return null;
+        String host = System.getProperty("race.stream.host");
+        try {
+            RaceStreamServer stream = host == null ? RaceStreamServer.start(port)
+                    : RaceStreamServer.start(new InetSocketAddress(host, port));
+            System.out.println("Streaming races on port " + stream.getPort());
+            return stream;
+        } catch (IOException e) {
+            System.err.println("Could not start race stream on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public BetLedger getBetLedger() {
+        return betLedger;
+    }
+
+    // -Drace.field.size fills the field out to that many horses with
+    // generated runners, for stress-testing large fields.
     private void initializeRaceWithDefaults() {
         race = new Race2(RACE_LENGTH);
-        horses = new Horse2[MAX_HORSES];
+        int fieldSize = Integer.getInteger("race.field.size", 5);
+        horses = new Horse2[Math.max(INITIAL_LANES, fieldSize)];
 
         horses[0] = new Horse2('A', "Thunder", 0.9, "Rectangle", Color.RED);
         horses[1] = new Horse2('B', "Lightning", 0.8, "Circle", Color.BLUE);
         horses[2] = new Horse2('C', "Storm", 0.7, "Triangle", Color.GREEN);
         horses[3] = new Horse2('D', "Doom", 0.6, "Diamond", Color.YELLOW);
         horses[4] = new Horse2('E', "Rain", 0.75, "Star", Color.MAGENTA);
+        for (int i = 5; i < fieldSize; i++) {
+            horses[i] = new Horse2(symbolFor(i), "Runner " + (i + 1), 0.5 + (i % 5) * 0.1,
+                    SHAPE_OPTIONS[i % SHAPE_OPTIONS.length], COLOR_OPTIONS[i % COLOR_OPTIONS.length]);
+        }
 
         for (int i = 0; i < horses.length; i++) {
             if (horses[i] != null) {
@@ -101,7 +201,10 @@ public class RaceGUI {
 
         // Race Panel
         racePanel = new RacePanel(race, horses);
-        rightPanel.add(racePanel, BorderLayout.CENTER);
+        JScrollPane trackScroll = new JScrollPane(racePanel);
+        trackScroll.setColumnHeaderView(racePanel.getHeader());
+        trackScroll.getVerticalScrollBar().setUnitIncrement(20);
+        rightPanel.add(trackScroll, BorderLayout.CENTER);
 
         // Bottom Control Panel
         JPanel controlPanel = new JPanel(new FlowLayout());
@@ -109,16 +212,35 @@ public class RaceGUI {
         // Weather Controls
         JPanel weatherPanel = new JPanel();
         weatherPanel.add(new JLabel("Weather:"));
-        weatherCombo = new JComboBox<>(WEATHER_OPTIONS);
+        weatherCombo = new JComboBox<>(Weather.values());
         weatherCombo.addActionListener(e -> {
-            String currentWeather = (String) weatherCombo.getSelectedItem();
+            Weather currentWeather = (Weather) weatherCombo.getSelectedItem();
             racePanel.setCurrentWeather(currentWeather);
-            applyWeatherEffects();
+            if (raceState != null) {
+                RaceState state = raceState;
+                raceWeather = currentWeather;
+                simulationThread.execute(() -> state.setWeather(currentWeather));
+            }
+            bettingPanel.refreshStats();
             infoArea.append("Weather changed to: " + currentWeather + "\n");
         });
         weatherPanel.add(weatherCombo);
         controlPanel.add(weatherPanel);
 
+        // Speed Controls
+        JPanel speedPanel = new JPanel();
+        speedPanel.add(new JLabel("Speed:"));
+        speedCombo = new JComboBox<>(SPEED_OPTIONS);
+        speedCombo.addActionListener(e -> {
+            raceSpeed = SPEED_FACTORS[speedCombo.getSelectedIndex()];
+            animationTimer.setDelay(animationDelay());
+            if (raceInProgress) {
+                simulationThread.execute(this::scheduleTicks);
+            }
+        });
+        speedPanel.add(speedCombo);
+        controlPanel.add(speedPanel);
+
         // Start Button
         startButton = new JButton("Start Race");
         startButton.addActionListener(e -> startRace());
@@ -129,6 +251,12 @@ public class RaceGUI {
         resultsButton.addActionListener(e -> showRaceResults());
         controlPanel.add(resultsButton);
 
+        // Replay Button
+        replayButton = new JButton("Replay Last Race");
+        replayButton.setEnabled(false);
+        replayButton.addActionListener(e -> replayLastRace());
+        controlPanel.add(replayButton);
+
         // Info Area
         infoArea = new JTextArea(5, 80);
         infoArea.setEditable(false);
@@ -142,8 +270,7 @@ public class RaceGUI {
         frame.add(splitPane);
 
         // Initialize timers
-        animationTimer = new Timer(50, e -> racePanel.repaint());
-        setupRaceTimer();
+        animationTimer = new Timer(50, e -> racePanel.repaintMovedHorses());
 
         frame.pack();
         frame.setMinimumSize(new Dimension(1000, 600));
@@ -160,88 +287,161 @@ public class RaceGUI {
             return;
         }
 
+        RaceState state = raceState;
+        if (state == null) return;
+
+        // Horses still in the race in order of place, then those that fell.
         StringBuilder results = new StringBuilder("\n--- RACE RESULTS ---\n");
-        for (Horse2 horse : horses) {
-            if (horse != null) {
-                results.append(horse.getSymbol())
-                        .append(": ").append(horse.getName())
-                        .append(" - Distance: ").append(horse.getDistanceTravelled())
-                        .append(" - ").append(horse.hasFallen() ? "FALLEN" : "FINISHED")
-                        .append("\n");
+        Leaderboard board = state.getLeaderboard();
+        int[] order = new int[board.size()];
+        int placed = board.getTop(order.length, order);
+        for (int k = 0; k < placed; k++) {
+            int lane = order[k];
+            int gap = board.getGap(lane);
+            appendResult(results, board.getPosition(lane) + ". ", state, lane,
+                    state.getDistance(lane) == RACE_LENGTH ? "FINISHED" : gap > 0 ? gap + " behind" : "LEADING");
+        }
+        for (int lane = 0; lane < state.getLanes(); lane++) {
+            if (state.getHorse(lane) != null && !board.isOnBoard(lane)) {
+                appendResult(results, "-. ", state, lane, "FALLEN");
             }
         }
         infoArea.append(results.toString());
     }
 
-    private void setupRaceTimer() {
-        raceTimer = new Timer(100, e -> {
-            raceDurationTicks++;  // Track each tick
-
-            if (!raceInProgress) return;
-
-            boolean allHorsesFallen = true;
-            boolean raceWon = false;
-
-            for (Horse2 horse : horses) {
-                if (horse != null && race.raceWonBy(horse)) {
-                    endRace(horse.getName() + " wins the race!");
-                    raceWon = true;
-                    break;
-                }
-            }
+    private static void appendResult(StringBuilder results, String place, RaceState state, int lane, String status) {
+        Horse2 horse = state.getHorse(lane);
+        results.append(place).append(horse.getSymbol())
+                .append(": ").append(horse.getName())
+                .append(" - Distance: ").append(state.getDistance(lane))
+                .append(" - ").append(status)
+                .append("\n");
+    }
 
-            if (raceWon) return;
+    // Runs on the simulation thread: (re)starts the ticks at the chosen
+    // speed, or for Instant runs the rest of the race straight away.
+    private void scheduleTicks() {
+        if (!raceInProgress) return;
+        if (raceTask != null) {
+            raceTask.cancel(false);
+            raceTask = null;
+        }
+        int factor = raceSpeed;
+        if (factor == 0) {
+            resolveRace();
+            return;
+        }
+        long period = TimeUnit.MILLISECONDS.toMicros(TICK_MILLIS) / factor;
+        raceTask = simulationThread.scheduleAtFixedRate(this::simulationTick,
+                period, period, TimeUnit.MICROSECONDS);
+    }
 
-            for (Horse2 horse : horses) {
-                if (horse != null && !horse.hasFallen()) {
-                    allHorsesFallen = false;
-                    moveHorseWithWeather(horse);
-                    if (horse.hasFallen()) {
-                        infoArea.append(horse.getName() + " has fallen!\n");
-                    }
-                }
-            }
+    // Frames no faster than the ticks, and no faster than about 60 a second.
+    private int animationDelay() {
+        return raceSpeed == 0 ? 50 : Math.max(16, Math.min(50, TICK_MILLIS / raceSpeed));
+    }
 
-            if (allHorsesFallen) {
-                endRace("All horses have fallen! Race over.");
-            }
-        });
+    // Runs on the simulation thread. One tick of the race, logged, with
+    // any falls reported; returns the first horse home this tick, or -1.
+    private int stepRace(StringBuilder news) {
+        raceDurationTicks++;  // Track each tick
+        int firstHome = raceState.tick(raceRandom);
+        raceLog.tick(raceState);
+        for (int i = raceState.nextFell(0); i >= 0; i = raceState.nextFell(i + 1)) {
+            news.append(raceState.getHorse(i).getName()).append(" has fallen!\n");
+        }
+        RaceEvents.horsesFell(raceId, raceState, raceWeather);
+        Telemetry.tick();
+        return firstHome;
     }
 
-    private void moveHorseWithWeather(Horse2 horse) {
-        if (!horse.hasFallen()) {
-            if (Math.random() < horse.getConfidence()) {
-                if (Math.random() < horse.speedModifier) {
-                    horse.moveForward();
-                }
-            }
+    // Runs on the simulation thread; ends the race if it is over.
+    private void endRaceIfOver(int firstHome) {
+        if (firstHome >= 0) {
+            endRace(raceState.getHorse(firstHome).getName() + " wins the race!");
+        } else if (raceState.allFallen()) {
+            endRace("All horses have fallen! Race over.");
+        }
+    }
 
-            // Reduced base fall chance from 0.05 to 0.02 (2% base chance)
-            double fallChance = 0.002 * horse.getConfidence(); // Removed the squared confidence
+    // Runs on the simulation thread: the rest of the race with nothing
+    // painted or streamed until the end, then settled like any other. Each
+    // tick still goes into the tick telemetry and a RaceTick event.
+    private void resolveRace() {
+        long start = System.nanoTime();
+        int fromTick = raceDurationTicks;
+        StringBuilder news = new StringBuilder();
+        int firstHome = -1;
+        while (firstHome < 0 && !raceState.allFallen()) {
+            long tickStart = Telemetry.start();
+            RaceEvents.RaceTick tickEvent = RaceEvents.tickStarted();
+            firstHome = stepRace(news);
+            Telemetry.record(Telemetry.TICK_TIME, tickStart);
+            RaceEvents.tickFinished(tickEvent, raceId, raceState.getTick());
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        news.append("Resolved ").append(raceDurationTicks - fromTick).append(" ticks in ")
+                .append(micros).append(" µs\n");
+        RaceSnapshot snapshot = raceState.snapshot();
+        racePanel.publish(snapshot);
+        if (raceStream != null) {
+            raceStream.publish(snapshot);
+        }
+        SwingUtilities.invokeLater(() -> infoArea.append(news.toString()));
+        endRaceIfOver(firstHome);
+    }
 
-            // Reduced weather multipliers
-            if (racePanel.getCurrentWeather().equals("Muddy")) {
-                fallChance *= 1.3;  // Reduced from 1.5
-            } else if (racePanel.getCurrentWeather().equals("Icy")) {
-                fallChance *= 1.6;  // Reduced from 2.0
-            }
+    // Runs on the simulation thread.
+    private void simulationTick() {
+        if (!raceInProgress) return;
+        long tickStart = Telemetry.start();
+        RaceEvents.RaceTick tickEvent = RaceEvents.tickStarted();
+
+        StringBuilder news = new StringBuilder();
+        int firstHome = stepRace(news);
+        RaceSnapshot snapshot = raceState.snapshot();
+        racePanel.publish(snapshot);
+        if (raceStream != null) {
+            raceStream.publish(snapshot);
+        }
 
-            if (Math.random() < fallChance) {
-                horse.fall();
-            }
+        int leader = raceState.getLeaderboard().getLeader();
+        if (leader != announcedLeader && leader >= 0 && raceState.getLeaderboard().getLeadingDistance() > 0) {
+            news.append(raceState.getHorse(leader).getName()).append(" takes the lead\n");
+            announcedLeader = leader;
+        }
+        if (news.length() > 0) {
+            SwingUtilities.invokeLater(() -> infoArea.append(news.toString()));
+        }
+        Telemetry.record(Telemetry.TICK_TIME, tickStart);
+        RaceEvents.tickFinished(tickEvent, raceId, raceState.getTick());
+        if (Telemetry.ENABLED) {
+            long posted = System.nanoTime();
+            SwingUtilities.invokeLater(() -> Telemetry.record(Telemetry.EDT_DELAY, posted));
         }
+
+        endRaceIfOver(firstHome);
     }
 
-    private void applyWeatherEffects() {
-        String currentWeather = racePanel.getCurrentWeather();
-        for (Horse2 horse : horses) {
-            if (horse != null) {
-                horse.applyWeatherEffect(currentWeather);
-            }
+    // Gentler than Race2's rule so that GUI races usually reach the finish.
+    public static double fallChance(double confidence, Weather weather) {
+        // Reduced base fall chance from 0.05 to 0.02 (2% base chance)
+        double fallChance = 0.002 * confidence; // Removed the squared confidence
+
+        // Reduced weather multipliers
+        switch (weather) {
+            case MUDDY:
+                return fallChance * 1.3;  // Reduced from 1.5
+            case ICY:
+                return fallChance * 1.6;  // Reduced from 2.0
+            default:
+                return fallChance;
         }
     }
 
     public void addNewHorse(String name, double confidence, String shape, Color color) {
+        // The field is fixed once a race starts; the panel is disabled meanwhile too.
+        if (raceInProgress) return;
         int nextAvailableSlot = -1;
         for (int i = 0; i < horses.length; i++) {
             if (horses[i] == null) {
@@ -250,13 +450,6 @@ public class RaceGUI {
             }
         }
 
-        if (nextAvailableSlot == -1) {
-            JOptionPane.showMessageDialog(frame,
-                    "Maximum number of horses (" + MAX_HORSES + ") reached!",
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
         try {
             if (name.isEmpty()) {
                 throw new IllegalArgumentException("Name cannot be empty");
@@ -266,27 +459,36 @@ public class RaceGUI {
                 throw new IllegalArgumentException("Confidence must be between 0.1 and 1.0");
             }
 
-            char symbol = (char) ('A' + nextAvailableSlot);
+            if (nextAvailableSlot == -1) {
+                nextAvailableSlot = horses.length;
+                horses = Arrays.copyOf(horses, horses.length * 2);
+                racePanel.setHorses(horses);
+            }
+
+            char symbol = symbolFor(nextAvailableSlot);
             Horse2 newHorse = new Horse2(symbol, name, confidence, shape, color);
-            newHorse.applyWeatherEffect(racePanel.getCurrentWeather());
             horses[nextAvailableSlot] = newHorse;
             race.addHorse(newHorse, nextAvailableSlot + 1);
 
             // Update all dropdown menus
             updateAllHorseDropdowns();
 
-            racePanel.repaint();
+            racePanel.rosterChanged();
             infoArea.append("Added new horse: " + name + " (" + shape + ")\n");
-
-            if (nextAvailableSlot == MAX_HORSES - 1) {
-                addHorsePanel.disableAdding();
-            }
         } catch (IllegalArgumentException e) {
             JOptionPane.showMessageDialog(frame,
                     e.getMessage(),
                     "Input Error", JOptionPane.ERROR_MESSAGE);
         }
     }
+    // A, B, ... Z, then a ... z, then on through Latin Extended letters, so
+    // every lane keeps a distinct symbol for betting however big the field.
+    private static char symbolFor(int slot) {
+        if (slot < 26) return (char) ('A' + slot);
+        if (slot < 52) return (char) ('a' + slot - 26);
+        return (char) (0x100 + slot - 52);
+    }
+
     public JComboBox<Color> getColorJComboBox() {
         JComboBox<Color> colorCombo = new JComboBox<>(COLOR_OPTIONS);
         colorCombo.setRenderer(new DefaultListCellRenderer() {
@@ -317,30 +519,92 @@ public class RaceGUI {
     private void startRace() {
         raceInProgress = true;
         startButton.setEnabled(false);
-        infoArea.setText("Starting new race... Weather: " + racePanel.getCurrentWeather() + "\n");
-
-        for (Horse2 horse : horses) {
-            if (horse != null) {
-                horse.goBackToStart();
-                horse.applyWeatherEffect(racePanel.getCurrentWeather());
-            }
+        replayButton.setEnabled(false);
+        addHorsePanel.setAddEnabled(false);
+        Long fixedSeed = Long.getLong("race.seed");
+        raceSeed = fixedSeed != null ? fixedSeed : RaceRandom.newSeed();
+        raceRandom = RaceRandom.fromSeed(raceSeed);
+        infoArea.setText("Starting new race... Weather: " + racePanel.getCurrentWeather()
+                + " (seed " + raceSeed + ")\n");
+
+        raceWeather = racePanel.getCurrentWeather();
+        raceState = new RaceState(horses, RACE_LENGTH, raceWeather, RaceGUI::fallChance);
+        raceState.bindHorses();
+        announcedLeader = -1;
+        racePanel.publish(raceState.snapshot());
+        if (raceStream != null) {
+            raceStream.raceStarted(raceState, raceWeather);
+            raceStream.publish(raceState.snapshot());
         }
-
+        raceLogBytes = new ByteArrayOutputStream();
+        raceLog = RaceLogWriter.inMemory(raceLogBytes);
+        raceLog.raceStarted(raceState, raceWeather, raceSeed);
+        raceId = RaceEvents.nextRaceId();
+        RaceEvents.raceStarted(raceId, raceState, raceWeather, raceSeed);
+        raceFinishEvent = new RaceEvents.RaceFinish();
+        raceFinishEvent.begin();
+
+        animationTimer.setDelay(animationDelay());
         animationTimer.start();
-        raceTimer.start();
+        simulationThread.execute(this::scheduleTicks);
     }
 
 
+    // Runs on the simulation thread; only the Swing updates go to the EDT.
     private void endRace(String message) {
         raceInProgress = false;
-        raceTimer.stop();
-        animationTimer.stop();
+        Telemetry.raceFinished();
+        if (raceTask != null) {
+            raceTask.cancel(false);
+            raceTask = null;
+        }
+
+        // Whatever goes wrong settling the race, the controls must come back.
+        String error;
+        try {
+            error = settleRace();
+        } catch (RuntimeException e) {
+            error = "Could not record the race results: " + e.getMessage();
+            System.err.println(error);
+        }
+        String settleError = error;
+
+        // Reset for next race
+        raceDurationTicks = 0;
+
+        SwingUtilities.invokeLater(() -> {
+            animationTimer.stop();
+            infoArea.append(message + "\n");
+            if (settleError != null) {
+                infoArea.append(settleError + "\n");
+            }
+            startButton.setEnabled(true);
+            replayButton.setEnabled(lastRecording != null);
+            addHorsePanel.setAddEnabled(true);
+            racePanel.repaintMovedHorses();
+            bettingPanel.refreshStats();
+        });
+    }
+
+    // Runs on the simulation thread: logs the race, pays out and records
+    // the metrics. Returns an error message for the info area, or null.
+    // Works from the field the race started with, which raceState keeps;
+    // 'horses' belongs to the EDT.
+    private String settleRace() {
+        lastRecording = null;
+        raceLog.raceFinished(raceState);
+        byte[] logged = raceLogBytes.toByteArray();
+        lastRecording = RaceLogReader.read(logged).get(0);
+        String logError = saveRaceLog(logged);
 
         Horse2 winner = findWinningHorse();
+        RaceEvents.raceFinished(raceFinishEvent, raceId, winner, raceWeather, raceDurationTicks);
         // Record race results for all horses
-        for (Horse2 horse : horses) {
-            if (horse != null) {
-                horse.recordRaceResult(horse == winner);
+        Horse2[] field = new Horse2[raceState.getLanes()];
+        for (int i = 0; i < field.length; i++) {
+            field[i] = raceState.getHorse(i);
+            if (field[i] != null) {
+                field[i].recordRaceResult(field[i] == winner);
             }
         }
 
@@ -348,31 +612,64 @@ public class RaceGUI {
             bettingPanel.processWinnings(winner);
         }
 
-        performanceMetrics.recordRace(horses, racePanel.getCurrentWeather(),
+        performanceMetrics.recordRace(field, raceWeather,
                 RACE_LENGTH, raceDurationTicks);
+        return logError;
+    }
 
-        // Reset for next race
-        raceDurationTicks = 0;
+    // Appends the race to races.log in the directory named by -Drace.log.dir.
+    // Returns an error message for the info area, or null.
+    private String saveRaceLog(byte[] logged) {
+        String dir = System.getProperty("race.log.dir");
+        if (dir == null) return null;
+        try {
+            Files.write(Path.of(dir, "races.log"), logged,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return null;
+        } catch (IOException e) {
+            return "Could not save race log: " + e.getMessage();
+        }
+    }
 
-        SwingUtilities.invokeLater(() -> {
-            infoArea.append(message + "\n");
-            startButton.setEnabled(true);
-            racePanel.repaint();
+    // Plays the last race back on the track at the chosen speed; Instant
+    // goes straight to the finish.
+    private void replayLastRace() {
+        RaceRecording recording = lastRecording;
+        if (raceInProgress || recording == null) return;
+
+        startButton.setEnabled(false);
+        replayButton.setEnabled(false);
+        infoArea.append("Replaying last race (seed " + recording.getSeed() + ")...\n");
+        animationTimer.start();
+
+        int factor = raceSpeed;
+        simulationThread.execute(() -> {
+            if (factor == 0) {
+                recording.forEachTick(racePanel::publish);
+            } else {
+                RaceReplay replay = new RaceReplay(recording);
+                replay.setTicksPerSecond(factor * 1000 / TICK_MILLIS);
+                replay.play(racePanel::publish);
+            }
+            SwingUtilities.invokeLater(() -> {
+                animationTimer.stop();
+                infoArea.append("Replay finished.\n");
+                startButton.setEnabled(true);
+                replayButton.setEnabled(true);
+                racePanel.repaintMovedHorses();
+            });
         });
     }
 
     private Horse2 findWinningHorse() {
-        for (Horse2 horse : horses) {
-            if (horse != null && race.raceWonBy(horse)) {
-                return horse;
-            }
-        }
-        return null;
+        int winner = raceState.getWinner();
+        return winner >= 0 ? raceState.getHorse(winner) : null;
     }
 
 
 
     public static void main(String[] args) {
+        Telemetry.startReporting(Long.getLong("race.telemetry.interval", 10), System.out);
         SwingUtilities.invokeLater(() -> {
             RaceGUI raceGUI = new RaceGUI();
             raceGUI.startRaceGUI(); // Initiate the GUI and start the race
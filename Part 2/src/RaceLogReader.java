@@ -0,0 +1,171 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads back the races written by RaceLogWriter. A race whose FINISH record
+// is missing is dropped, and reading carries on with the race after it: the
+// writer appends, so a log cut off mid-race (the program stopped before the
+// race finished) may have later runs written straight after the cut. A cut
+// at a record boundary leaves the next START where a TICK or FINISH was
+// expected; a cut inside a record leaves bytes that stop making sense, and
+// the reader then looks for the next START it can read a whole race from.
+public class RaceLogReader {
+
+    public static List<RaceRecording> read(Path file) throws IOException {
+        return read(Files.readAllBytes(file));
+    }
+
+    public static List<RaceRecording> read(byte[] log) {
+        ByteBuffer in = ByteBuffer.wrap(log);
+        List<RaceRecording> races = new ArrayList<>();
+
+        // Checked up front so that a file which is not a log of this version
+        // fails loudly rather than reading as an empty log.
+        if (log.length > 0 && log[0] != RaceLogWriter.START) {
+            throw new IllegalArgumentException("Not a race log");
+        }
+        if (log.length > 1 && log[1] != RaceLogWriter.VERSION) {
+            throw new IllegalArgumentException("Unsupported race log version " + log[1]);
+        }
+        while (in.hasRemaining()) {
+            int raceStart = in.position();
+            try {
+                RaceRecording race = readRace(in, log);
+                if (race != null) {
+                    races.add(race);
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                in.position(nextStart(log, raceStart + 1));
+            }
+        }
+        return races;
+    }
+
+    // One race from its START record on, or null if another START cut in
+    // before it finished; the buffer is then left on that START.
+    private static RaceRecording readRace(ByteBuffer in, byte[] log) {
+        if (in.get() != RaceLogWriter.START) {
+            throw new IllegalArgumentException("Expected race start at byte " + (in.position() - 1));
+        }
+        int version = getVarint(in);
+        if (version != RaceLogWriter.VERSION) {
+            throw new IllegalArgumentException("Unsupported race log version " + version);
+        }
+        int raceLength = getVarint(in);
+        Weather weather = Weather.fromLabel(getString(in));
+        long zigzag = getVarlong(in);
+        long seed = (zigzag >>> 1) ^ -(zigzag & 1);
+        int lanes = getVarint(in);
+        if (raceLength <= 0 || lanes < 0) {
+            throw new IllegalArgumentException("Malformed race start");
+        }
+
+        Horse2[] horses = new Horse2[lanes];
+        double[] confidence = new double[lanes];
+        double[] speedModifier = new double[lanes];
+        for (int i = 0; i < lanes; i++) {
+            byte present = in.get();
+            if (present == 0) continue;
+            if (present != 1) throw new IllegalArgumentException("Malformed lane " + i);
+            char symbol = (char) getVarint(in);
+            String name = getString(in);
+            confidence[i] = in.getDouble();
+            speedModifier[i] = in.getDouble();
+            horses[i] = RaceRecording.standIn(symbol, name, confidence[i]);
+        }
+
+        // Tick bodies are kept encoded, minus their record markers. They are
+        // replayed as they are read, so that bytes which only look like
+        // records (a cut followed by the next race) are caught: every event
+        // moves or fells a horse that is still running, one step at a time.
+        ByteArrayOutputStream ticks = new ByteArrayOutputStream();
+        int[] distance = new int[lanes];
+        boolean[] stopped = new boolean[lanes];
+        int tick = 0;
+        while (true) {
+            byte record = in.get();
+            if (record == RaceLogWriter.TICK) {
+                int start = in.position();
+                int gap = getVarint(in);
+                int events = getVarint(in);
+                if (gap <= 0 || events <= 0 || events > lanes) {
+                    throw new IllegalArgumentException("Malformed tick after tick " + tick);
+                }
+                tick += gap;
+                int lane = -1;
+                for (int e = 0; e < events; e++) {
+                    int event = getVarint(in);
+                    lane += (event >>> 2) + 1;
+                    if (event < 0 || lane >= lanes || horses[lane] == null || stopped[lane] || (event & 3) == 0) {
+                        throw new IllegalArgumentException("Malformed event in tick " + tick);
+                    }
+                    if ((event & 1) != 0) distance[lane]++;
+                    stopped[lane] = (event & 2) != 0 || distance[lane] == raceLength;
+                }
+                ticks.write(log, start, in.position() - start);
+            } else if (record == RaceLogWriter.FINISH) {
+                int gap = getVarint(in);
+                int winner = getVarint(in) - 1;
+                if (gap < 0 || winner >= lanes || winner >= 0 && distance[winner] != raceLength) {
+                    throw new IllegalArgumentException("Malformed finish after tick " + tick);
+                }
+                tick += gap;
+                return new RaceRecording(raceLength, weather, seed, horses, confidence,
+                        speedModifier, ticks.toByteArray(), tick, winner);
+            } else if (record == RaceLogWriter.START) {
+                in.position(in.position() - 1);
+                return null;
+            } else {
+                throw new IllegalArgumentException("Unexpected record at byte " + (in.position() - 1));
+            }
+        }
+    }
+
+    // The next place a race of this version could start, or the end of the log.
+    private static int nextStart(byte[] log, int from) {
+        for (int i = from; i + 1 < log.length; i++) {
+            if (log[i] == RaceLogWriter.START && log[i + 1] == RaceLogWriter.VERSION) {
+                return i;
+            }
+        }
+        return log.length;
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = getVarint(in);
+        if (length < 0 || length > in.remaining()) throw new BufferUnderflowException();
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long getVarlong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Append-only binary race log. A race is written as
+//
+//   START  'R' version raceLength weather seed lanes {present [symbol name confidence speed]}
+//   TICK   'T' ticksSinceLastRecord events {laneGap << 2 | fell << 1 | moved}
+//   FINISH 'F' ticksSinceLastRecord winner+1
+//
+// with every integer a varint (the seed zigzag-encoded). Ticks in which
+// nothing happened are not written; the tick gap on the next record covers
+// them. Lanes within a tick are written as gaps from the previous lane, so a
+// typical tick costs a few bytes. Bytes are collected in a buffer and handed
+// to the channel when it fills, when a race finishes, or on close.
+public class RaceLogWriter implements Closeable {
+    static final byte START = 'R';
+    static final byte TICK = 'T';
+    static final byte FINISH = 'F';
+    static final int VERSION = 1;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private int lastRecordedTick;
+
+    public RaceLogWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public static RaceLogWriter open(Path file) throws IOException {
+        return new RaceLogWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    // Records into memory; the bytes can be read back with RaceLogReader.
+    public static RaceLogWriter inMemory(ByteArrayOutputStream target) {
+        return new RaceLogWriter(Channels.newChannel(target));
+    }
+
+    public void raceStarted(RaceState state, Weather weather, long seed) {
+        lastRecordedTick = state.getTick();
+        ensure(32 + weather.getLabel().length() * 3);
+        buffer.put(START);
+        putVarint(VERSION);
+        putVarint(state.getRaceLength());
+        putString(weather.getLabel());
+        putVarlong((seed << 1) ^ (seed >> 63));
+        putVarint(state.getLanes());
+        for (int i = 0; i < state.getLanes(); i++) {
+            Horse2 horse = state.getHorse(i);
+            ensure(32 + (horse == null ? 0 : horse.getName().length() * 3));
+            if (horse == null) {
+                buffer.put((byte) 0);
+                continue;
+            }
+            buffer.put((byte) 1);
+            putVarint(horse.getSymbol());
+            putString(horse.getName());
+            buffer.putDouble(state.getConfidence(i));
+            buffer.putDouble(state.getSpeedModifier(i));
+        }
+    }
+
+    public void tick(RaceState state) {
+        int events = 0;
+        for (int i = state.nextChanged(0); i >= 0; i = state.nextChanged(i + 1)) {
+            events++;
+        }
+        if (events == 0) return;
+
+        ensure(16);
+        buffer.put(TICK);
+        putVarint(state.getTick() - lastRecordedTick);
+        putVarint(events);
+        int previous = -1;
+        for (int i = state.nextChanged(0); i >= 0; i = state.nextChanged(i + 1)) {
+            ensure(5);
+            putVarint((i - previous - 1) << 2 | (state.fellThisTick(i) ? 2 : 0) | (state.movedThisTick(i) ? 1 : 0));
+            previous = i;
+        }
+        lastRecordedTick = state.getTick();
+    }
+
+    public void raceFinished(RaceState state) {
+        ensure(16);
+        buffer.put(FINISH);
+        putVarint(state.getTick() - lastRecordedTick);
+        putVarint(state.getWinner() + 1);
+        lastRecordedTick = state.getTick();
+        flush();
+    }
+
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void putString(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        putVarint(utf8.length);
+        buffer.put(utf8);
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void putVarlong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,52 @@
+public class RaceOdds {
+    private final RaceProbabilities probabilities;
+    private final double[] fairOdds;
+    private final double[] offeredOdds;
+    private final double overround;
+
+    RaceOdds(RaceProbabilities probabilities, double margin) {
+        this.probabilities = probabilities;
+        int lanes = probabilities.getLanes();
+        fairOdds = new double[lanes];
+        offeredOdds = new double[lanes];
+
+        double book = 0;
+        for (int i = 0; i < lanes; i++) {
+            book += probabilities.getWinProbability(i);
+        }
+        // Offered prices share the margin out in proportion to each horse's chance.
+        double scale = book > 0 ? (1 + margin) / book : 0;
+        double offeredBook = 0;
+        for (int i = 0; i < lanes; i++) {
+            double p = probabilities.getWinProbability(i);
+            fairOdds[i] = p > 0 ? 1 / p : Double.POSITIVE_INFINITY;
+            offeredOdds[i] = p > 0 ? 1 / (p * scale) : Double.POSITIVE_INFINITY;
+            if (p > 0) {
+                offeredBook += 1 / offeredOdds[i];
+            }
+        }
+        overround = offeredBook - 1;
+    }
+
+    public double getWinProbability(int lane) {
+        return probabilities.getWinProbability(lane);
+    }
+
+    public double getPlaceProbability(int lane) {
+        return probabilities.getPlaceProbability(lane);
+    }
+
+    // Decimal odds (stake included) that break even on average.
+    public double getFairOdds(int lane) {
+        return fairOdds[lane];
+    }
+
+    public double getOfferedOdds(int lane) {
+        return offeredOdds[lane];
+    }
+
+    // Sum of the implied probabilities of the offered prices, minus one.
+    public double getOverround() {
+        return overround;
+    }
+}
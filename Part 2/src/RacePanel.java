@@ -1,20 +1,50 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class RacePanel extends JPanel {
-    private final Horse2[] horses;
+    private Horse2[] horses;
     public final int RACE_LENGTH;
     private final int LANE_HEIGHT = 60;
     private final int MARGIN = 20;
-    private final int MAX_HORSES = 10;
-    private String currentWeather = "Sunny";
+    private final int LANE_SPACING = LANE_HEIGHT + MARGIN;
+    private Weather currentWeather = Weather.SUNNY;
 
     private static final Color SUNNY_COLOR = new Color(135, 206, 235);
     private static final Color RAINY_COLOR = new Color(169, 169, 169);
     private static final Color MUDDY_COLOR = new Color(139, 69, 19);
     private static final Color ICY_COLOR = new Color(173, 216, 230);
+    private static final Color LANE_COLOR = new Color(240, 240, 240, 200);
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font SYMBOL_FONT = new Font("Arial", Font.BOLD, 20);
+    private static final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 12);
+    private static final int SCALE = 15;
+    private static final int START_Y = 30;
+    private static final int HORSE_WIDTH = 40;
+    private static final int LABEL_WIDTH = 240;
+
+    // Static parts of the visible stretch of track, redrawn only when weather,
+    // roster, size or scroll position change. Only the lanes in view are ever
+    // drawn, so a field of thousands of horses costs no more per frame than
+    // the few that fit on screen.
+    private BufferedImage background;
+    private int backgroundY;
+    private int[] paintedDistance;
+    private boolean[] paintedFallen;
+    private double[] paintedConfidence;
+    private int[] paintedPosition;
+    // Lanes that were in view at the last frame; lanes scrolling in are
+    // brought up to date when they arrive.
+    private int syncedFirst;
+    private int syncedLast = -1;
+    private String paintedLeaders = "";
+    private final JComponent header = new Header();
+    // Latest positions from the simulation thread; null until a race starts.
+    private final AtomicReference<RaceSnapshot> snapshot = new AtomicReference<>();
 
     private interface ShapeDrawer {
         void draw(Graphics g, int x, int y, int width, int height, Color color);
@@ -66,38 +96,154 @@ public class RacePanel extends JPanel {
     }
 
     public RacePanel(Race2 race, Horse2[] horses) {
-        this.horses = horses;
         this.RACE_LENGTH = race != null ? race.getRaceLength() : 50;
-        int panelHeight = (MAX_HORSES * (LANE_HEIGHT + MARGIN)) + 100;
-        setPreferredSize(new Dimension(900, panelHeight));
+        setOpaque(true);
         updateBackgroundColor();
+        setHorses(horses);
+    }
+
+    // Takes a new (typically larger) horses array, sizing the panel to its lanes.
+    public void setHorses(Horse2[] horses) {
+        this.horses = horses;
+        int lanes = horses != null ? horses.length : 0;
+        paintedDistance = Arrays.copyOf(paintedDistance != null ? paintedDistance : new int[0], lanes);
+        paintedFallen = Arrays.copyOf(paintedFallen != null ? paintedFallen : new boolean[0], lanes);
+        paintedConfidence = Arrays.copyOf(paintedConfidence != null ? paintedConfidence : new double[0], lanes);
+        paintedPosition = Arrays.copyOf(paintedPosition != null ? paintedPosition : new int[0], lanes);
+        setPreferredSize(new Dimension(900, lanes * LANE_SPACING + 100));
+        revalidate();
+        rosterChanged();
     }
 
-    public void setCurrentWeather(String weather) {
+    public void setCurrentWeather(Weather weather) {
         this.currentWeather = weather;
         updateBackgroundColor();
+        background = null;
+        repaint();
+        header.repaint();
     }
 
-    public String getCurrentWeather() {
+    public Weather getCurrentWeather() {
         return currentWeather;
     }
 
+    // Call after horses are added or removed so the lanes are redrawn.
+    public void rosterChanged() {
+        background = null;
+        syncedLast = -1;
+        repaint();
+    }
+
+    // The weather and leaders line, for the column header of the scroll
+    // pane holding the panel, so that it stays in sight as the field scrolls.
+    public JComponent getHeader() {
+        return header;
+    }
+
+    // Safe to call from any thread.
+    public void publish(RaceSnapshot latest) {
+        snapshot.set(latest);
+    }
+
+    private int distanceOf(RaceSnapshot latest, int lane) {
+        return latest != null && lane < latest.getLanes() ? latest.getDistance(lane) : horses[lane].getDistanceTravelled();
+    }
+
+    private boolean fallenOf(RaceSnapshot latest, int lane) {
+        return latest != null && lane < latest.getLanes() ? latest.hasFallen(lane) : horses[lane].hasFallen();
+    }
+
+    private int positionOf(RaceSnapshot latest, int lane) {
+        return latest != null && lane < latest.getLanes() ? latest.getPosition(lane) : -1;
+    }
+
+    // Repaints just the horses in view that moved, fell, changed confidence
+    // or changed place since they were last painted, covering both their old
+    // and new positions, and the header when the leaders change. Horses out
+    // of view are not looked at; a lane scrolling into view is brought up to
+    // date, and its whole row repainted if it changed while it was away.
+    // Snapshots only carry positions, and a frame spans several ticks, so
+    // changes are found by comparing against what was painted.
+    public void repaintMovedHorses() {
+        if (horses == null) return;
+        RaceSnapshot latest = snapshot.get();
+        Rectangle view = getVisibleRect();
+        int firstVisible = firstLaneIn(view);
+        int lastVisible = lastLaneIn(view);
+        for (int i = firstVisible; i <= lastVisible; i++) {
+            Horse2 horse = horses[i];
+            if (horse == null) continue;
+            int distance = distanceOf(latest, i);
+            boolean fallen = fallenOf(latest, i);
+            double confidence = horse.getConfidence();
+            int position = positionOf(latest, i);
+            if (distance != paintedDistance[i] || fallen != paintedFallen[i] || confidence != paintedConfidence[i]
+                    || position != paintedPosition[i]) {
+                if (i < syncedFirst || i > syncedLast) {
+                    repaint(0, START_Y + i * LANE_SPACING, getWidth(), LANE_SPACING);
+                } else {
+                    repaint(horseBounds(i, paintedDistance[i]));
+                    repaint(horseBounds(i, distance));
+                }
+                paintedDistance[i] = distance;
+                paintedFallen[i] = fallen;
+                paintedConfidence[i] = confidence;
+                paintedPosition[i] = position;
+            }
+        }
+        syncedFirst = firstVisible;
+        syncedLast = lastVisible;
+
+        String leaders = leadersText(latest);
+        if (!leaders.equals(paintedLeaders)) {
+            header.repaint();
+            paintedLeaders = leaders;
+        }
+    }
+
+    // "Leaders: Thunder, Storm -1, Rain -2", gaps in units of track.
+    private String leadersText(RaceSnapshot latest) {
+        if (latest == null || latest.getLeaderCount() == 0 || latest.getLanes() > horses.length) return "";
+        StringBuilder text = new StringBuilder("Leaders: ");
+        for (int place = 0; place < latest.getLeaderCount(); place++) {
+            int lane = latest.getLeader(place);
+            if (horses[lane] == null) return "";
+            if (place > 0) text.append(", ");
+            text.append(horses[lane].getName());
+            int gap = latest.getGap(lane);
+            if (gap > 0) text.append(" -").append(gap);
+        }
+        return text.toString();
+    }
 
+    private Rectangle horseBounds(int lane, int distance) {
+        int x = 50 + distance * SCALE;
+        int y = START_Y + lane * LANE_SPACING;
+        return new Rectangle(x, y, LABEL_WIDTH, LANE_SPACING);
+    }
 
+    // The range of lanes whose rows overlap the area, clamped to the field.
+    private int firstLaneIn(Rectangle area) {
+        return Math.max(0, (area.y - START_Y) / LANE_SPACING);
+    }
 
+    private int lastLaneIn(Rectangle area) {
+        int lanes = horses != null ? horses.length : 0;
+        return Math.min(lanes - 1, Math.max(-1, (area.y + area.height - START_Y) / LANE_SPACING));
+    }
 
     private void updateBackgroundColor() {
         switch (currentWeather) {
-            case "Sunny":
+            case SUNNY:
                 setBackground(SUNNY_COLOR);
                 break;
-            case "Rainy":
+            case RAINY:
                 setBackground(RAINY_COLOR);
                 break;
-            case "Muddy":
+            case MUDDY:
                 setBackground(MUDDY_COLOR);
                 break;
-            case "Icy":
+            case ICY:
                 setBackground(ICY_COLOR);
                 break;
         }
@@ -105,47 +251,78 @@ public class RacePanel extends JPanel {
 
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        drawRace(g);
+        long paintStart = Telemetry.start();
+        Rectangle view = getVisibleRect();
+        if (background == null || background.getWidth() != Math.max(1, view.width)
+                || background.getHeight() != Math.max(1, view.height) || backgroundY != view.y) {
+            background = createBackground(view);
+            backgroundY = view.y;
+        }
+        g.drawImage(background, 0, backgroundY, null);
+        drawHorses(g);
+        Telemetry.record(Telemetry.PAINT_TIME, paintStart);
     }
 
-    private void drawRace(Graphics g) {
-        int scale = 15;
-        int startY = 30;
+    private BufferedImage createBackground(Rectangle view) {
+        int width = Math.max(1, view.width);
+        int height = Math.max(1, view.height);
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        BufferedImage image = gc != null
+                ? gc.createCompatibleImage(width, height)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
-        g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 16));
-        g.drawString("Current Weather: " + currentWeather, 50, 20);
+        Graphics2D g = image.createGraphics();
+        g.translate(0, -view.y);
+        g.setColor(getBackground());
+        g.fillRect(0, view.y, width, height);
 
         g.setColor(Color.RED);
-        int finishX = 50 + RACE_LENGTH * scale;
+        int finishX = 50 + RACE_LENGTH * SCALE;
         int FINISH_LINE_WIDTH = 10;
-        g.fillRect(finishX, 0, FINISH_LINE_WIDTH, MAX_HORSES * (LANE_HEIGHT + MARGIN) + 50);
+        g.fillRect(finishX, view.y, FINISH_LINE_WIDTH, height);
 
-        for (int i = 0; i < horses.length; i++) {
-            if (horses[i] == null) continue;
+        if (horses != null) {
+            for (int i = firstLaneIn(view), last = lastLaneIn(view); i <= last; i++) {
+                if (horses[i] == null) continue;
+
+                int y = START_Y + i * LANE_SPACING;
+                g.setColor(LANE_COLOR);
+                g.fillRect(50, y, RACE_LENGTH * SCALE, LANE_HEIGHT);
+                g.setColor(Color.BLACK);
+                g.drawRect(50, y, RACE_LENGTH * SCALE, LANE_HEIGHT);
+            }
+        }
+        g.dispose();
+        return image;
+    }
 
-            int y = startY + i * (LANE_HEIGHT + MARGIN);
+    private void drawHorses(Graphics g) {
+        if (horses == null) return;
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = getVisibleRect();
+        RaceSnapshot latest = snapshot.get();
 
-            Color laneColor = new Color(240, 240, 240, 200);
-            g.setColor(laneColor);
-            g.fillRect(50, y, RACE_LENGTH * scale, LANE_HEIGHT);
-            g.setColor(Color.BLACK);
-            g.drawRect(50, y, RACE_LENGTH * scale, LANE_HEIGHT);
+        for (int i = firstLaneIn(clip), last = lastLaneIn(clip); i <= last; i++) {
+            if (horses[i] == null) continue;
+
+            int distance = distanceOf(latest, i);
+            if (!clip.intersects(horseBounds(i, distance))) continue;
 
-            drawHorse(g, horses[i], y, scale);
+            int y = START_Y + i * LANE_SPACING;
+            drawHorse(g, horses[i], distance, fallenOf(latest, i), positionOf(latest, i),
+                    latest != null ? latest.getGap(i) : 0, y);
         }
     }
 
-    private void drawHorse(Graphics g, Horse2 horse, int y, int scale) {
-        int x = 50 + horse.getDistanceTravelled() * scale;
-        int width = 40;
+    private void drawHorse(Graphics g, Horse2 horse, int distance, boolean fallen, int position, int gap, int y) {
+        int x = 50 + distance * SCALE;
+        int width = HORSE_WIDTH;
         int height = LANE_HEIGHT;
 
         SHAPE_DRAWERS.get(horse.getShape()).draw(g, x, y, width, height, horse.getColor());
 
         g.setColor(Color.WHITE);
-        g.setFont(new Font("Arial", Font.BOLD, 20));
+        g.setFont(SYMBOL_FONT);
         FontMetrics fm = g.getFontMetrics();
         String symbol = String.valueOf(horse.getSymbol());
         int symbolWidth = fm.stringWidth(symbol);
@@ -154,8 +331,35 @@ public class RacePanel extends JPanel {
         g.drawString(symbol, symbolX, symbolY);
 
         g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.PLAIN, 12));
-        String status = horse.hasFallen() ? "✖ FALLEN" : String.format("Conf: %.1f", horse.getConfidence());
+        g.setFont(LABEL_FONT);
+        String status = fallen ? "✖ FALLEN" : String.format("Conf: %.1f", horse.getConfidence());
+        if (position > 0) {
+            status = "#" + position + (gap > 0 ? " (-" + gap + ")" : "") + " " + status;
+        }
         g.drawString(horse.getName() + " - " + status, x, y + height + 15);
     }
-}
\ No newline at end of file
+
+    private class Header extends JComponent {
+        Header() {
+            setOpaque(true);
+        }
+
+        // As wide as the track, so it scrolls sideways along with it.
+        @Override
+        public Dimension getPreferredSize() {
+            return new Dimension(RacePanel.this.getPreferredSize().width, START_Y);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(RacePanel.this.getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setColor(Color.BLACK);
+            g.setFont(TITLE_FONT);
+            g.drawString("Current Weather: " + currentWeather, 50, 20);
+            if (horses != null) {
+                g.drawString(leadersText(snapshot.get()), 320, 20);
+            }
+        }
+    }
+}
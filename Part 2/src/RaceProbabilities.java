@@ -0,0 +1,95 @@
+public class RaceProbabilities {
+    private final Horse2[] horses;
+    private final double[] win;
+    private final double[] place;
+    private final double[] fall;
+    private final double[] finish;
+    private final double deadHeat;
+    private final double noWinner;
+    private final int ticks;
+
+    RaceProbabilities(Horse2[] horses, double[] win, double[] place, double[] fall, double[] finish,
+                      double deadHeat, double noWinner, int ticks) {
+        this.horses = horses;
+        this.win = win;
+        this.place = place;
+        this.fall = fall;
+        this.finish = finish;
+        this.deadHeat = deadHeat;
+        this.noWinner = noWinner;
+        this.ticks = ticks;
+    }
+
+    public int getLanes() {
+        return win.length;
+    }
+
+    public double getWinProbability(int lane) {
+        return win[lane];
+    }
+
+    public double getPlaceProbability(int lane) {
+        return place[lane];
+    }
+
+    // Chance of being flagged as fallen when the race ends.
+    public double getFallProbability(int lane) {
+        return fall[lane];
+    }
+
+    // Chance of ever reaching the finish if the race were left running.
+    public double getFinishProbability(int lane) {
+        return finish[lane];
+    }
+
+    public double getWinProbability(Horse2 horse) {
+        int lane = laneOf(horse);
+        return lane < 0 ? 0 : win[lane];
+    }
+
+    public double getPlaceProbability(Horse2 horse) {
+        int lane = laneOf(horse);
+        return lane < 0 ? 0 : place[lane];
+    }
+
+    public double getFallProbability(Horse2 horse) {
+        int lane = laneOf(horse);
+        return lane < 0 ? 0 : fall[lane];
+    }
+
+    public double getDeadHeatProbability() {
+        return deadHeat;
+    }
+
+    public double getNoWinnerProbability() {
+        return noWinner;
+    }
+
+    // How many ticks were evaluated before the remaining probability mass became negligible.
+    public int getTicksEvaluated() {
+        return ticks;
+    }
+
+    private int laneOf(Horse2 horse) {
+        for (int i = 0; i < horses.length; i++) {
+            if (horses[i] == horse) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("exact over %d ticks, dead heat %.4f, no winner %.4f%n",
+                ticks, deadHeat, noWinner));
+        for (int i = 0; i < horses.length; i++) {
+            if (horses[i] != null) {
+                sb.append(String.format("%c: %-12s win %.4f  place %.4f  fall %.4f%n",
+                        horses[i].getSymbol(), horses[i].getName(), win[i], place[i], fall[i]));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+
+// Random sources for the simulation. Every race, and every worker in a batch
+// run, owns its own SplittableGenerator, so no generator is ever shared
+// between threads, and a race started from a recorded seed repeats draw for draw.
+public final class RaceRandom {
+    private static final double[] LOG_FACTORIAL = new double[256];
+
+    static {
+        for (int k = 1; k < LOG_FACTORIAL.length; k++) {
+            LOG_FACTORIAL[k] = LOG_FACTORIAL[k - 1] + Math.log(k);
+        }
+    }
+
+    private RaceRandom() {
+    }
+
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    public static SplittableGenerator fromSeed(long seed) {
+        return new SplittableRandom(seed);
+    }
+
+    // Failures before the r-th success in trials that succeed with
+    // probability p, drawn as a Poisson variate whose mean is a Gamma(r)
+    // variate; constant expected cost however large r is.
+    public static long negativeBinomial(RandomGenerator random, int r, double p) {
+        if (p >= 1) return 0;
+        return poisson(random, gamma(random, r) * (1 - p) / p);
+    }
+
+    // Successes among n draws without replacement from N items of which K
+    // are successes. Linear in n.
+    public static int hypergeometric(RandomGenerator random, int N, int K, int n) {
+        int successes = 0;
+        for (int i = 0; i < n && successes < K; i++) {
+            if (random.nextDouble() * (N - i) < K - successes) {
+                successes++;
+            }
+        }
+        return successes;
+    }
+
+    // Marsaglia and Tsang's method, for shape >= 1 and unit scale.
+    static double gamma(RandomGenerator random, double shape) {
+        double d = shape - 1.0 / 3;
+        double c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x = random.nextGaussian();
+            double v = 1 + c * x;
+            if (v <= 0) continue;
+            v = v * v * v;
+            double u = random.nextDouble();
+            if (u < 1 - 0.0331 * x * x * x * x || Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) {
+                return d * v;
+            }
+        }
+    }
+
+    // Inversion for small means; Hormann's transformed rejection (PTRS) otherwise.
+    static long poisson(RandomGenerator random, double mean) {
+        if (mean < 10) {
+            long k = 0;
+            double p = Math.exp(-mean);
+            double sum = p;
+            double u = random.nextDouble();
+            while (u > sum && p > 0) {
+                k++;
+                p *= mean / k;
+                sum += p;
+            }
+            return k;
+        }
+        double logMean = Math.log(mean);
+        double b = 0.931 + 2.53 * Math.sqrt(mean);
+        double a = -0.059 + 0.02483 * b;
+        double invAlpha = 1.1239 + 1.1328 / (b - 3.4);
+        double vr = 0.9277 - 3.6224 / (b - 2);
+        while (true) {
+            double u = random.nextDouble() - 0.5;
+            double v = random.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2 * a / us + b) * u + mean + 0.43);
+            if (us >= 0.07 && v <= vr) return k;
+            if (k < 0 || (us < 0.013 && v > us)) continue;
+            if (Math.log(v) + Math.log(invAlpha) - Math.log(a / (us * us) + b)
+                    <= -mean + k * logMean - logFactorial(k)) {
+                return k;
+            }
+        }
+    }
+
+    static double logFactorial(long k) {
+        if (k < LOG_FACTORIAL.length) return LOG_FACTORIAL[(int) k];
+        double x = k + 1;
+        double x2 = x * x;
+        return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+                + 1 / (12 * x) - 1 / (360 * x * x2) + 1 / (1260 * x * x2 * x2);
+    }
+}
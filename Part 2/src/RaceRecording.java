@@ -0,0 +1,133 @@
+import java.awt.Color;
+import java.util.function.Consumer;
+
+// One race read back from a RaceLogWriter log. The tick records stay in their
+// encoded form and are decoded again on every replay.
+public class RaceRecording {
+    private final int raceLength;
+    private final Weather weather;
+    private final long seed;
+    private final Horse2[] horses;
+    private final double[] confidence;
+    private final double[] speedModifier;
+    private final byte[] ticks;
+    private final int totalTicks;
+    private final int winner;
+
+    RaceRecording(int raceLength, Weather weather, long seed, Horse2[] horses, double[] confidence,
+                  double[] speedModifier, byte[] ticks, int totalTicks, int winner) {
+        this.raceLength = raceLength;
+        this.weather = weather;
+        this.seed = seed;
+        this.horses = horses;
+        this.confidence = confidence;
+        this.speedModifier = speedModifier;
+        this.ticks = ticks;
+        this.totalTicks = totalTicks;
+        this.winner = winner;
+    }
+
+    public int getRaceLength() {
+        return raceLength;
+    }
+
+    public Weather getWeather() {
+        return weather;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Stand-in horses carrying the recorded names, symbols and confidences.
+    public Horse2[] getHorses() {
+        return horses.clone();
+    }
+
+    public double getConfidence(int lane) {
+        return confidence[lane];
+    }
+
+    public double getSpeedModifier(int lane) {
+        return speedModifier[lane];
+    }
+
+    public int getTotalTicks() {
+        return totalTicks;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public int getEncodedSize() {
+        return ticks.length;
+    }
+
+    // Calls the consumer once per tick, including ticks in which nothing moved.
+    // The standings are rebuilt as the live race kept them, so a replayed
+    // snapshot ranks the field the same way.
+    public void forEachTick(Consumer<RaceSnapshot> consumer) {
+        int lanes = horses.length;
+        int[] distance = new int[lanes];
+        long[] fallen = new long[(lanes + 63) >>> 6];
+        Leaderboard board = new Leaderboard(lanes, raceLength);
+        for (int i = 0; i < lanes; i++) {
+            if (horses[i] != null) board.add(i, 0);
+        }
+        int tick = 0;
+        int pos = 0;
+
+        while (pos < ticks.length) {
+            int[] cursor = {pos};
+            int gap = readVarint(ticks, cursor);
+            int events = readVarint(ticks, cursor);
+            pos = cursor[0];
+
+            for (int i = 1; i < gap; i++) {
+                consumer.accept(new RaceSnapshot(++tick, distance.clone(), fallen.clone(), -1, board));
+            }
+
+            int lane = -1;
+            for (int e = 0; e < events; e++) {
+                cursor[0] = pos;
+                int event = readVarint(ticks, cursor);
+                pos = cursor[0];
+                lane += (event >>> 2) + 1;
+                if ((event & 1) != 0) {
+                    distance[lane]++;
+                    board.advance(lane);
+                }
+                if ((event & 2) != 0) {
+                    fallen[lane >>> 6] |= 1L << lane;
+                    if (distance[lane] != raceLength) board.remove(lane);
+                }
+            }
+            tick++;
+            consumer.accept(new RaceSnapshot(tick, distance.clone(), fallen.clone(),
+                    tick == totalTicks ? winner : -1, board));
+        }
+
+        while (tick < totalTicks) {
+            tick++;
+            consumer.accept(new RaceSnapshot(tick, distance.clone(), fallen.clone(),
+                    tick == totalTicks ? winner : -1, board));
+        }
+    }
+
+    static int readVarint(byte[] bytes, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static Horse2 standIn(char symbol, String name, double confidence) {
+        return new Horse2(symbol, name, confidence, "Rectangle", Color.GRAY);
+    }
+}
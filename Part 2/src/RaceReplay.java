@@ -0,0 +1,81 @@
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Plays a recorded race back at a fixed tick rate, to the console or to
+// anything that accepts snapshots (RacePanel.publish, for example).
+public class RaceReplay {
+    private final RaceRecording recording;
+    private int ticksPerSecond = 10;
+
+    public RaceReplay(RaceRecording recording) {
+        this.recording = recording;
+    }
+
+    public void setTicksPerSecond(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) throw new IllegalArgumentException("Tick rate must be positive");
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    // Blocks the calling thread until the last tick has been delivered.
+    public void play(Consumer<RaceSnapshot> view) {
+        long tickNanos = 1_000_000_000L / ticksPerSecond;
+        long[] due = {System.nanoTime()};
+        recording.forEachTick(snapshot -> {
+            view.accept(snapshot);
+            due[0] += tickNanos;
+            long wait;
+            while ((wait = due[0] - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new RuntimeException(new InterruptedException());
+                }
+            }
+        });
+    }
+
+    public void playToConsole() {
+        Horse2[] horses = recording.getHorses();
+        int[] rowOfLane = new int[horses.length];
+        int rows = 0;
+        for (int i = 0; i < horses.length; i++) {
+            rowOfLane[i] = horses[i] != null ? rows++ : -1;
+        }
+        ConsoleRenderer renderer = new ConsoleRenderer("RACE REPLAY - " + recording.getWeather()
+                + " (seed " + recording.getSeed() + ")", recording.getRaceLength(), rows, ticksPerSecond);
+
+        play(snapshot -> {
+            for (int i = 0; i < horses.length; i++) {
+                if (horses[i] == null) continue;
+                boolean fallen = snapshot.hasFallen(i);
+                renderer.setLane(rowOfLane[i], snapshot.getDistance(i),
+                        fallen ? '⌢' : horses[i].getSymbol(),
+                        horses[i].getSymbol() + ": " + horses[i].getName() + (fallen ? " (Fallen)" : ""));
+            }
+            renderer.render();
+        });
+
+        int winner = recording.getWinner();
+        System.out.println(winner >= 0 ? "\nWinner: " + horses[winner].getName() : "\nNo winner - every horse fell");
+    }
+
+    // Usage: RaceReplay <log file> [race index, default last] [ticks per second]
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: RaceReplay <log file> [race index] [ticks per second]");
+            return;
+        }
+        List<RaceRecording> races = RaceLogReader.read(Path.of(args[0]));
+        if (races.isEmpty()) {
+            System.out.println("No complete races in " + args[0]);
+            return;
+        }
+        int index = args.length > 1 ? Integer.parseInt(args[1]) : races.size() - 1;
+        RaceReplay replay = new RaceReplay(races.get(index));
+        if (args.length > 2) {
+            replay.setTicksPerSecond(Integer.parseInt(args[2]));
+        }
+        replay.playToConsole();
+    }
+}
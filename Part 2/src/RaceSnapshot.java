@@ -0,0 +1,76 @@
+import java.util.Arrays;
+
+// An immutable copy of the race positions after one tick, handed from the
+// simulation thread to whoever paints or streams the race. It carries the
+// standings too: the first few horses and a copy of the Leaderboard's
+// per-distance counts, so any horse's place is a log-time lookup rather
+// than a sort of the field.
+public final class RaceSnapshot {
+    // Leaders kept in each snapshot.
+    public static final int LEADERS = 3;
+
+    private final int tick;
+    private final int[] distance;
+    private final long[] fallen;
+    private final int winner;
+    private final DistanceCounts counts;
+    private final int leadingDistance;
+    private final int[] leaders;
+
+    RaceSnapshot(int tick, int[] distance, long[] fallen, int winner, Leaderboard board) {
+        this.tick = tick;
+        this.distance = distance;
+        this.fallen = fallen;
+        this.winner = winner;
+        counts = board.copyCounts();
+        leadingDistance = board.getLeadingDistance();
+        int[] top = new int[LEADERS];
+        leaders = Arrays.copyOf(top, board.getTop(LEADERS, top));
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public int getLanes() {
+        return distance.length;
+    }
+
+    public int getDistance(int lane) {
+        return distance[lane];
+    }
+
+    public boolean hasFallen(int lane) {
+        return (fallen[lane >>> 6] & (1L << lane)) != 0;
+    }
+
+    // Lane of the winning horse, or -1 while the race is undecided or nobody won.
+    public int getWinner() {
+        return winner;
+    }
+
+    // Place of the horse in the lane, horses level on distance sharing one,
+    // or -1 if it has fallen short of the finish.
+    public int getPosition(int lane) {
+        return inRace(lane) ? 1 + counts.countAhead(distance[lane]) : -1;
+    }
+
+    // Distance behind the leader, or -1 if the horse has fallen short of the finish.
+    public int getGap(int lane) {
+        return inRace(lane) ? leadingDistance - distance[lane] : -1;
+    }
+
+    private boolean inRace(int lane) {
+        return !hasFallen(lane) || distance[lane] == counts.getRaceLength();
+    }
+
+    // How many of the leading lanes are held, at most LEADERS.
+    public int getLeaderCount() {
+        return leaders.length;
+    }
+
+    // The lane in the given place from the front, 0 for the leader.
+    public int getLeader(int place) {
+        return leaders[place];
+    }
+}
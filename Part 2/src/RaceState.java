@@ -0,0 +1,488 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+// Structure-of-arrays view of a race. The tick kernel walks the lanes once,
+// moving, felling and finishing each horse in the same pass. Horse2 objects
+// that have been bound to a state read their distance and fallen flag from it.
+// Lanes without a horse are stopped from the start and never counted. The
+// kernel skips stopped lanes a word at a time, and the counts of horses
+// running and home and the Leaderboard are kept up to date as horses move,
+// so the leader, the winner and whether anyone is left standing are all
+// known without a pass over the field.
+//
+// Move and fall chances are held as thresholds out of 2^32, one table per
+// weather, built when the state is created or refreshed. A tick draws one
+// random long per horse and compares its high half against the move
+// threshold and its low half against the fall threshold, so changing the
+// weather mid-race only swaps which tables the kernel reads.
+//
+// Where the Vector API kernel is available (see TickKernel) the lanes are
+// moved a vector at a time instead. The random longs are drawn first, in
+// lane order and only for running horses, so both kernels consume the
+// generator identically and give the same race for the same seed.
+public class RaceState {
+    private static final double ONE = 0x1p32;
+    private static final TickKernel VECTOR_KERNEL = TickKernel.vectorized();
+
+    private final int lanes;
+    private final int raceLength;
+    private final Horse2[] horses;
+    private final FallRule fallRule;
+
+    private final int[] distance;
+    // Indexed by weather ordinal, then lane.
+    private double[][] confidenceTable;
+    private long[][] moveTable;
+    private long[][] fallTable;
+    private Weather weather;
+    private double[] confidence;
+    private long[] moveThreshold;
+    private long[] fallThreshold;
+    private final long[] fallen;
+    private final long[] fellThisTick;
+    private final long[] movedThisTick;
+    private final long[] stopped;
+    private final int[] finishTick;
+    private final int[] finishOrder;
+    private final Leaderboard leaderboard;
+    private TickKernel kernel = VECTOR_KERNEL;
+    private long[] randomBits;
+    private long[] finishedThisTick;
+
+    private int running;
+    private int finishers;
+    private int tick;
+
+    public RaceState(Horse2[] horses, int raceLength, Weather weather, FallRule fallRule) {
+        if (raceLength <= 0) throw new IllegalArgumentException("Race length must be positive");
+        this.lanes = horses.length;
+        this.raceLength = raceLength;
+        this.horses = horses.clone();
+        this.fallRule = fallRule;
+
+        int words = (lanes + 63) >>> 6;
+        distance = new int[lanes];
+        fallen = new long[words];
+        fellThisTick = new long[words];
+        movedThisTick = new long[words];
+        stopped = new long[words];
+        finishTick = new int[lanes];
+        finishOrder = new int[lanes];
+        leaderboard = new Leaderboard(lanes, raceLength);
+
+        this.weather = weather;
+        refresh();
+        reset();
+    }
+
+    private RaceState(RaceState other) {
+        lanes = other.lanes;
+        raceLength = other.raceLength;
+        horses = other.horses;
+        fallRule = other.fallRule;
+        distance = other.distance.clone();
+        // The tables are never written once built, so copies share them.
+        confidenceTable = other.confidenceTable;
+        moveTable = other.moveTable;
+        fallTable = other.fallTable;
+        setWeather(other.weather);
+        fallen = other.fallen.clone();
+        fellThisTick = other.fellThisTick.clone();
+        movedThisTick = other.movedThisTick.clone();
+        stopped = other.stopped.clone();
+        finishTick = other.finishTick.clone();
+        finishOrder = other.finishOrder.clone();
+        leaderboard = new Leaderboard(other.leaderboard);
+        kernel = other.kernel;
+        running = other.running;
+        finishers = other.finishers;
+        tick = other.tick;
+    }
+
+    // An unbound copy with its own position arrays, for use on another thread.
+    public RaceState copy() {
+        return new RaceState(this);
+    }
+
+    public void bindHorses() {
+        for (int i = 0; i < lanes; i++) {
+            if (horses[i] != null) {
+                horses[i].bind(this, i);
+            }
+        }
+    }
+
+    // Rebuilds every weather's tables from the horses' current confidence.
+    // Copies made earlier keep the tables they had.
+    public void refresh() {
+        int count = Weather.count();
+        double[][] confidences = new double[count][lanes];
+        long[][] moves = new long[count][lanes];
+        long[][] falls = new long[count][lanes];
+        for (int w = 0; w < count; w++) {
+            Weather conditions = Weather.of(w);
+            for (int i = 0; i < lanes; i++) {
+                Horse2 horse = horses[i];
+                if (horse != null) {
+                    double c = horse.getConfidence(conditions);
+                    confidences[w][i] = c;
+                    moves[w][i] = threshold(c * conditions.getSpeedModifier());
+                    falls[w][i] = threshold(fallRule.fallChance(c, conditions));
+                }
+            }
+        }
+        confidenceTable = confidences;
+        moveTable = moves;
+        fallTable = falls;
+        setWeather(weather);
+    }
+
+    // Takes effect from the next tick.
+    public void setWeather(Weather weather) {
+        this.weather = weather;
+        confidence = confidenceTable[weather.ordinal()];
+        moveThreshold = moveTable[weather.ordinal()];
+        fallThreshold = fallTable[weather.ordinal()];
+    }
+
+    public Weather getWeather() {
+        return weather;
+    }
+
+    private static long threshold(double chance) {
+        if (!(chance > 0)) return 0;
+        return chance >= 1 ? 1L << 32 : Math.round(chance * ONE);
+    }
+
+    public void reset() {
+        Arrays.fill(distance, 0);
+        Arrays.fill(fallen, 0);
+        Arrays.fill(fellThisTick, 0);
+        Arrays.fill(movedThisTick, 0);
+        Arrays.fill(stopped, 0);
+        Arrays.fill(finishTick, 0);
+        leaderboard.clear();
+        running = 0;
+        finishers = 0;
+        tick = 0;
+        for (int i = 0; i < lanes; i++) {
+            if (horses[i] == null) {
+                stopped[i >>> 6] |= 1L << i;
+            } else {
+                running++;
+                leaderboard.add(i, 0);
+            }
+        }
+    }
+
+    // Advances every running horse by one tick and returns the lane of the
+    // first horse to reach the finish this tick, or -1 if none did.
+    public int tick(RandomGenerator random) {
+        if (kernel != null) return vectorTick(random);
+        tick++;
+        Arrays.fill(fellThisTick, 0);
+        Arrays.fill(movedThisTick, 0);
+        long[] moveThreshold = this.moveThreshold;
+        long[] fallThreshold = this.fallThreshold;
+        int first = -1;
+
+        for (int word = 0; word < stopped.length; word++) {
+            for (long live = liveLanes(word); live != 0; live &= live - 1) {
+                int i = word << 6 | Long.numberOfTrailingZeros(live);
+                long bit = 1L << i;
+
+                long bits = random.nextLong();
+                if (bits >>> 32 < moveThreshold[i]) {
+                    distance[i]++;
+                    movedThisTick[word] |= bit;
+                    leaderboard.advance(i);
+                }
+
+                boolean fell = (bits & 0xFFFFFFFFL) < fallThreshold[i];
+                if (fell) {
+                    fallen[word] |= bit;
+                    fellThisTick[word] |= bit;
+                }
+
+                if (distance[i] == raceLength) {
+                    stopped[word] |= bit;
+                    running--;
+                    finishTick[i] = tick;
+                    finishOrder[finishers++] = i;
+                    if (first < 0) {
+                        first = i;
+                    }
+                } else if (fell) {
+                    stopped[word] |= bit;
+                    running--;
+                    leaderboard.remove(i);
+                }
+            }
+        }
+        return first;
+    }
+
+    // Lanes of the word that are not stopped.
+    private long liveLanes(int word) {
+        long live = ~stopped[word];
+        if (word == stopped.length - 1 && (lanes & 63) != 0) {
+            live &= (1L << lanes) - 1;
+        }
+        return live;
+    }
+
+    private int vectorTick(RandomGenerator random) {
+        tick++;
+        Arrays.fill(fellThisTick, 0);
+        Arrays.fill(movedThisTick, 0);
+        if (randomBits == null) {
+            randomBits = new long[lanes];
+            finishedThisTick = new long[stopped.length];
+        } else {
+            Arrays.fill(finishedThisTick, 0);
+        }
+
+        for (int word = 0; word < stopped.length; word++) {
+            for (long live = liveLanes(word); live != 0; live &= live - 1) {
+                randomBits[word << 6 | Long.numberOfTrailingZeros(live)] = random.nextLong();
+            }
+        }
+
+        kernel.step(lanes, randomBits, moveThreshold, fallThreshold, stopped, distance, raceLength,
+                movedThisTick, fellThisTick, finishedThisTick);
+
+        int first = -1;
+        for (int word = 0; word < stopped.length; word++) {
+            for (long moved = movedThisTick[word]; moved != 0; moved &= moved - 1) {
+                int lane = word << 6 | Long.numberOfTrailingZeros(moved);
+                leaderboard.advance(lane);
+            }
+            long fell = fellThisTick[word];
+            long finished = finishedThisTick[word];
+            if ((fell | finished) == 0) continue;
+            for (long out = fell & ~finished; out != 0; out &= out - 1) {
+                leaderboard.remove(word << 6 | Long.numberOfTrailingZeros(out));
+            }
+            fallen[word] |= fell;
+            stopped[word] |= fell | finished;
+            running -= Long.bitCount(fell | finished);
+            for (; finished != 0; finished &= finished - 1) {
+                int lane = word << 6 | Long.numberOfTrailingZeros(finished);
+                finishTick[lane] = tick;
+                finishOrder[finishers++] = lane;
+                if (first < 0) {
+                    first = lane;
+                }
+            }
+        }
+        return first;
+    }
+
+    // Whether tick runs on the Vector API kernel.
+    public boolean isVectorized() {
+        return kernel != null;
+    }
+
+    // Switches this state between the kernels; asking for the vector kernel
+    // where it is unavailable leaves the scalar one in place.
+    public void setVectorized(boolean vectorized) {
+        kernel = vectorized ? VECTOR_KERNEL : null;
+    }
+
+    // Starts a new tick for engines that move the horses themselves.
+    void beginTick(int tick) {
+        this.tick = tick;
+        Arrays.fill(fellThisTick, 0);
+        Arrays.fill(movedThisTick, 0);
+    }
+
+    // Sets a position without any finishing, for engines that work positions out after the fact.
+    void placeAt(int lane, int newDistance) {
+        distance[lane] = newDistance;
+        leaderboard.moveTo(lane, newDistance);
+    }
+
+    void moveForward(int lane) {
+        moveTo(lane, distance[lane] + 1);
+    }
+
+    // Puts a running horse at the given distance, finishing it there if that
+    // is the end of the track.
+    void moveTo(int lane, int newDistance) {
+        if (!isStopped(lane) && newDistance != distance[lane]) {
+            distance[lane] = newDistance;
+            movedThisTick[lane >>> 6] |= 1L << lane;
+            leaderboard.moveTo(lane, newDistance);
+            if (distance[lane] == raceLength) {
+                stop(lane);
+                finishTick[lane] = tick;
+                finishOrder[finishers++] = lane;
+            }
+        }
+    }
+
+    void fall(int lane) {
+        int word = lane >>> 6;
+        long bit = 1L << lane;
+        if ((fallen[word] & bit) == 0) {
+            fallen[word] |= bit;
+            fellThisTick[word] |= bit;
+            if (!isStopped(lane)) {
+                stop(lane);
+                leaderboard.remove(lane);
+            }
+        }
+    }
+
+    void resetLane(int lane) {
+        distance[lane] = 0;
+        leaderboard.remove(lane);
+        if (horses[lane] != null) {
+            leaderboard.add(lane, 0);
+        }
+        int word = lane >>> 6;
+        long bit = 1L << lane;
+        fallen[word] &= ~bit;
+        if ((stopped[word] & bit) != 0) {
+            stopped[word] &= ~bit;
+            running++;
+        }
+    }
+
+    private void stop(int lane) {
+        stopped[lane >>> 6] |= 1L << lane;
+        running--;
+    }
+
+    boolean isStopped(int lane) {
+        return (stopped[lane >>> 6] & (1L << lane)) != 0;
+    }
+
+    public int getDistance(int lane) {
+        return distance[lane];
+    }
+
+    public boolean hasFallen(int lane) {
+        return (fallen[lane >>> 6] & (1L << lane)) != 0;
+    }
+
+    public boolean movedThisTick(int lane) {
+        return (movedThisTick[lane >>> 6] & (1L << lane)) != 0;
+    }
+
+    public boolean anyFellThisTick() {
+        for (long word : fellThisTick) {
+            if (word != 0) return true;
+        }
+        return false;
+    }
+
+    public boolean fellThisTick(int lane) {
+        return (fellThisTick[lane >>> 6] & (1L << lane)) != 0;
+    }
+
+    // The first lane from 'from' on that fell this tick, or -1; a word of
+    // lanes at a time, so walking the fallers costs nothing for the rest.
+    public int nextFell(int from) {
+        return nextSet(fellThisTick, null, from);
+    }
+
+    // The first lane from 'from' on that moved or fell this tick, or -1.
+    public int nextChanged(int from) {
+        return nextSet(movedThisTick, fellThisTick, from);
+    }
+
+    private int nextSet(long[] bits, long[] orBits, int from) {
+        for (int word = from >>> 6; from < lanes && word < bits.length; word++) {
+            long set = bits[word] | (orBits != null ? orBits[word] : 0);
+            if (word == from >>> 6) set &= -1L << from;
+            if (set != 0) return word << 6 | Long.numberOfTrailingZeros(set);
+        }
+        return -1;
+    }
+
+    public boolean allFallen() {
+        return running == 0 && finishers == 0;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public int getFinishers() {
+        return finishers;
+    }
+
+    // Lanes in the order they reached the finish; ties within a tick go by lane.
+    public int getFinisher(int place) {
+        return finishOrder[place];
+    }
+
+    // Lane of the first horse home, or -1.
+    public int getWinner() {
+        return finishers > 0 ? finishOrder[0] : -1;
+    }
+
+    // Horses still in the race (running or home) by distance.
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    public int getFinishTick(int lane) {
+        return finishTick[lane];
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    public int getRaceLength() {
+        return raceLength;
+    }
+
+    // The horse's confidence in the current weather.
+    public double getConfidence(int lane) {
+        return confidence[lane];
+    }
+
+    public double getSpeedModifier(int lane) {
+        return horses[lane] == null ? 0 : weather.getSpeedModifier();
+    }
+
+    // Probability that a running horse in this lane advances on a given tick,
+    // as the kernel applies it.
+    public double getMoveChance(int lane) {
+        return moveThreshold[lane] / ONE;
+    }
+
+    public double getFallChance(int lane) {
+        return fallThreshold[lane] / ONE;
+    }
+
+    // The chances as the kernel holds them, out of 2^32.
+    long getMoveThreshold(int lane) {
+        return moveThreshold[lane];
+    }
+
+    long getFallThreshold(int lane) {
+        return fallThreshold[lane];
+    }
+
+    public Horse2 getHorse(int lane) {
+        return horses[lane];
+    }
+
+    public RaceSnapshot snapshot() {
+        return new RaceSnapshot(tick, distance.clone(), fallen.clone(), getWinner(), leaderboard);
+    }
+
+    public void copyFallenTo(boolean[] target) {
+        for (int i = 0; i < lanes; i++) {
+            target[i] = hasFallen(i);
+        }
+    }
+}
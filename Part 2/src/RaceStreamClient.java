@@ -0,0 +1,63 @@
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// Minimal viewer for RaceStreamServer: prints every frame it receives.
+// Usage: java RaceStreamClient [host] [port]
+public class RaceStreamClient {
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+
+        try (Socket socket = new Socket(host, port)) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            int lanes = 0;
+            while (true) {
+                byte[] frame;
+                try {
+                    frame = new byte[in.readInt()];
+                } catch (EOFException e) {
+                    break;
+                }
+                in.readFully(frame);
+                int[] cursor = {1};
+                if (frame[0] == RaceStreamServer.START) {
+                    RaceRecording.readVarint(frame, cursor);
+                    int raceLength = RaceRecording.readVarint(frame, cursor);
+                    String weather = readString(frame, cursor);
+                    lanes = RaceRecording.readVarint(frame, cursor);
+                    StringBuilder field = new StringBuilder();
+                    for (int i = 0; i < lanes; i++) {
+                        if (frame[cursor[0]++] == 0) continue;
+                        char symbol = (char) RaceRecording.readVarint(frame, cursor);
+                        field.append(' ').append(symbol).append('=').append(readString(frame, cursor));
+                    }
+                    System.out.println("Race of " + raceLength + " in " + weather + ":" + field);
+                } else if (frame[0] == RaceStreamServer.TICK) {
+                    int tick = RaceRecording.readVarint(frame, cursor);
+                    int winner = RaceRecording.readVarint(frame, cursor) - 1;
+                    StringBuilder line = new StringBuilder("tick " + tick + ":");
+                    int[] distance = new int[lanes];
+                    for (int i = 0; i < lanes; i++) {
+                        distance[i] = RaceRecording.readVarint(frame, cursor);
+                    }
+                    for (int i = 0; i < lanes; i++) {
+                        boolean fallen = (frame[cursor[0] + (i >>> 3)] & (1 << (i & 7))) != 0;
+                        line.append(' ').append(distance[i]).append(fallen ? "X" : "");
+                    }
+                    if (winner >= 0) line.append("  won by lane ").append(winner + 1);
+                    System.out.println(line);
+                }
+            }
+        }
+    }
+
+    private static String readString(byte[] frame, int[] cursor) {
+        int length = RaceRecording.readVarint(frame, cursor);
+        String s = new String(frame, cursor[0], length, StandardCharsets.UTF_8);
+        cursor[0] += length;
+        return s;
+    }
+}
@@ -0,0 +1,319 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Streams live races to any number of TCP viewers. Each frame is
+//
+//   length(int) type payload
+//
+//   START 'R' version raceLength weather lanes {present [symbol name]}
+//   TICK  'T' tick winner+1 {distance} fallenBits
+//
+// with integers as varints and fallenBits one bit per lane, lowest lane in
+// the low bit of the first byte. A viewer that connects mid-race gets the
+// race's START frame and then the latest tick.
+//
+// The tick loop only swaps in the newest encoded frame and nudges the I/O
+// thread, so it never waits on a viewer. Tick frames are complete
+// snapshots, which lets the I/O thread coalesce: a viewer that can't keep
+// up is sent whatever tick is newest when its socket next has room, and
+// the ticks in between are skipped. Nothing queues up per viewer beyond
+// the one frame in flight.
+public class RaceStreamServer implements Closeable {
+    static final byte START = 'R';
+    static final byte TICK = 'T';
+    static final int VERSION = 1;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread ioThread;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final ByteBuffer discard = ByteBuffer.allocate(512);
+
+    private volatile Frame start;
+    private volatile Frame latest;
+    private int race;
+    private long tickSequence;
+    private volatile int subscriberCount;
+    private volatile long framesSent;
+    private volatile long framesCoalesced;
+    private volatile boolean open = true;
+
+    private RaceStreamServer(ServerSocketChannel server, Selector selector) {
+        this.server = server;
+        this.selector = selector;
+        ioThread = new Thread(this::run, "race-stream");
+        ioThread.setDaemon(true);
+    }
+
+    // Listens on the loopback interface.
+    public static RaceStreamServer start(int port) throws IOException {
+        return start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public static RaceStreamServer start(InetSocketAddress address) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        Selector selector = null;
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+            selector = Selector.open();
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            if (selector != null) selector.close();
+            throw e;
+        }
+        RaceStreamServer stream = new RaceStreamServer(server, selector);
+        stream.ioThread.start();
+        return stream;
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    // Tick frames that slow viewers never saw because a newer one replaced them.
+    public long getFramesCoalesced() {
+        return framesCoalesced;
+    }
+
+    // Call from the tick loop before the race's first tick.
+    public synchronized void raceStarted(RaceState state, Weather weather) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64 + 16 * state.getLanes());
+        putVarint(payload, VERSION);
+        putVarint(payload, state.getRaceLength());
+        putString(payload, weather.getLabel());
+        putVarint(payload, state.getLanes());
+        for (int i = 0; i < state.getLanes(); i++) {
+            Horse2 horse = state.getHorse(i);
+            payload.write(horse == null ? 0 : 1);
+            if (horse != null) {
+                putVarint(payload, horse.getSymbol());
+                putString(payload, horse.getName());
+            }
+        }
+        race++;
+        latest = null;
+        start = new Frame(race, 0, frame(START, payload));
+        wakeUp();
+    }
+
+    // Call from the tick loop after each tick; never blocks.
+    public synchronized void publish(RaceSnapshot snapshot) {
+        int lanes = snapshot.getLanes();
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(8 + lanes * 2 + lanes / 8);
+        putVarint(payload, snapshot.getTick());
+        putVarint(payload, snapshot.getWinner() + 1);
+        for (int i = 0; i < lanes; i++) {
+            putVarint(payload, snapshot.getDistance(i));
+        }
+        int bits = 0;
+        for (int i = 0; i < lanes; i++) {
+            if (snapshot.hasFallen(i)) bits |= 1 << (i & 7);
+            if ((i & 7) == 7 || i == lanes - 1) {
+                payload.write(bits);
+                bits = 0;
+            }
+        }
+        latest = new Frame(race, ++tickSequence, frame(TICK, payload));
+        wakeUp();
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        selector.wakeup();
+        try {
+            ioThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+            subscriber.channel.close();
+        }
+        selector.close();
+        server.close();
+    }
+
+    private void wakeUp() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    private void run() {
+        try {
+            while (open) {
+                selector.select();
+                wakeupPending.set(false);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Subscriber subscriber = (Subscriber) key.attachment();
+                        if (key.isReadable()) drain(subscriber);
+                        if (key.isValid() && key.isWritable()) send(subscriber);
+                    }
+                }
+                for (int i = subscribers.size() - 1; i >= 0; i--) {
+                    send(subscribers.get(i));
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (open) {
+                System.err.println("Race stream stopped: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Subscriber subscriber = new Subscriber(channel);
+        subscriber.key = channel.register(selector, SelectionKey.OP_READ, subscriber);
+        subscribers.add(subscriber);
+        subscriberCount = subscribers.size();
+    }
+
+    // Viewers have nothing to say; reading only notices when they hang up.
+    private void drain(Subscriber subscriber) {
+        try {
+            int read;
+            do {
+                discard.clear();
+                read = subscriber.channel.read(discard);
+            } while (read > 0);
+            if (read < 0) drop(subscriber);
+        } catch (IOException e) {
+            drop(subscriber);
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        if (!subscriber.key.isValid()) return;
+        try {
+            while (true) {
+                if (subscriber.out != null) {
+                    subscriber.channel.write(subscriber.out);
+                    if (subscriber.out.hasRemaining()) {
+                        subscriber.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    subscriber.out = null;
+                    framesSent++;
+                }
+                Frame next = subscriber.next();
+                if (next == null) {
+                    subscriber.key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                subscriber.out = next.bytes.duplicate();
+            }
+        } catch (IOException e) {
+            drop(subscriber);
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        subscriber.key.cancel();
+        try {
+            subscriber.channel.close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+        subscribers.remove(subscriber);
+        subscriberCount = subscribers.size();
+    }
+
+    private static ByteBuffer frame(byte type, ByteArrayOutputStream payload) {
+        ByteBuffer bytes = ByteBuffer.allocate(5 + payload.size());
+        bytes.putInt(1 + payload.size()).put(type).put(payload.toByteArray()).flip();
+        return bytes.asReadOnlyBuffer();
+    }
+
+    private static void putVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void putString(ByteArrayOutputStream out, String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        putVarint(out, utf8.length);
+        out.write(utf8, 0, utf8.length);
+    }
+
+    private static final class Frame {
+        final int race;
+        final long sequence;
+        final ByteBuffer bytes;
+
+        Frame(int race, long sequence, ByteBuffer bytes) {
+            this.race = race;
+            this.sequence = sequence;
+            this.bytes = bytes;
+        }
+    }
+
+    private final class Subscriber {
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer out;
+        Frame sentStart;
+        Frame sentTick;
+
+        Subscriber(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        // The race's START if this viewer hasn't had it, else the newest tick
+        // it hasn't had, else nothing.
+        Frame next() {
+            Frame race = start;
+            if (race == null) return null;
+            if (sentStart != race) {
+                sentStart = race;
+                sentTick = null;
+                return race;
+            }
+            Frame tick = latest;
+            if (tick == null || tick.race != race.race || tick == sentTick) return null;
+            if (sentTick != null) {
+                framesCoalesced += tick.sequence - sentTick.sequence - 1;
+            }
+            sentTick = tick;
+            return tick;
+        }
+    }
+}
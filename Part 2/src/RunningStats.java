@@ -0,0 +1,66 @@
+// Count, mean and variance of a stream of values in constant memory, using
+// Welford's update, plus a quantile sketch for the shape of the distribution.
+// Two instances merge exactly (Chan et al.), so each worker can keep its own.
+public class RunningStats {
+    private long count;
+    private double mean;
+    private double m2;
+    private final QuantileSketch quantiles = new QuantileSketch();
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        quantiles.add(value);
+    }
+
+    public RunningStats merge(RunningStats other) {
+        if (other.count == 0) return this;
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        quantiles.merge(other.quantiles);
+        return this;
+    }
+
+    public RunningStats copy() {
+        return new RunningStats().merge(this);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : mean;
+    }
+
+    // Sample variance; 0 until there are two values.
+    public double getVariance() {
+        return count < 2 ? 0 : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return quantiles.getMin();
+    }
+
+    public double getMax() {
+        return quantiles.getMax();
+    }
+
+    // Estimated; NaN while empty.
+    public double getQuantile(double q) {
+        return quantiles.getQuantile(q);
+    }
+
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+}
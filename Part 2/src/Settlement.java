@@ -0,0 +1,90 @@
+// The result of settling a TotePool: every winning ticket and what it pays,
+// in cents. The net pool is what is left after the takeout; whatever the
+// rounding of individual payouts leaves over is breakage and is not paid.
+public final class Settlement {
+    private final Horse2 winner;
+    private final long poolTotal;
+    private final long netPool;
+    private final long winningStake;
+    private final long[] ticketIds;
+    private final long[] bettors;
+    private final long[] payouts;
+    private final long totalPaid;
+
+    Settlement(Horse2 winner, long poolTotal, long netPool, long winningStake,
+               long[] ticketIds, long[] bettors, long[] payouts) {
+        this.winner = winner;
+        this.poolTotal = poolTotal;
+        this.netPool = netPool;
+        this.winningStake = winningStake;
+        this.ticketIds = ticketIds;
+        this.bettors = bettors;
+        this.payouts = payouts;
+        long paid = 0;
+        for (long payout : payouts) paid += payout;
+        this.totalPaid = paid;
+    }
+
+    public Horse2 getWinner() {
+        return winner;
+    }
+
+    public long getPoolTotal() {
+        return poolTotal;
+    }
+
+    public long getNetPool() {
+        return netPool;
+    }
+
+    public long getWinningStake() {
+        return winningStake;
+    }
+
+    public int getWinningTickets() {
+        return ticketIds.length;
+    }
+
+    public long getTicketId(int index) {
+        return ticketIds[index];
+    }
+
+    public long getBettor(int index) {
+        return bettors[index];
+    }
+
+    public long getPayout(int index) {
+        return payouts[index];
+    }
+
+    // Total paid to one bettor across all their winning tickets.
+    public long getPayoutTo(long bettor) {
+        long total = 0;
+        for (int i = 0; i < bettors.length; i++) {
+            if (bettors[i] == bettor) total += payouts[i];
+        }
+        return total;
+    }
+
+    public long getTotalPaid() {
+        return totalPaid;
+    }
+
+    // Left in the net pool after rounding, or all of it when nobody backed the winner.
+    public long getBreakage() {
+        return netPool - totalPaid;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pool $%s, net $%s, %d winning tickets paid $%s, breakage $%s",
+                Money.format(poolTotal), Money.format(netPool), ticketIds.length,
+                Money.format(totalPaid), Money.format(getBreakage()))
+                + (winner == null ? " (no winner)" : " on " + winner.getName());
+    }
+
+    static Settlement empty(Horse2 winner, long poolTotal, long netPool, long winningStake) {
+        long[] none = new long[0];
+        return new Settlement(winner, poolTotal, netPool, winningStake, none, none, none);
+    }
+}
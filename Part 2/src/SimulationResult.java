@@ -0,0 +1,164 @@
+public class SimulationResult {
+    private final Horse2[] horses;
+    private final long[] wins;
+    private final long[] places;
+    private final long[] falls;
+    private long races;
+    private long deadHeats;
+    private long noWinner;
+    // Only filled in when the simulator is asked to collect statistics.
+    private final HorseStatistics[] statistics;
+
+    public SimulationResult(Horse2[] horses) {
+        this(horses, false);
+    }
+
+    SimulationResult(Horse2[] horses, boolean collectStatistics) {
+        this.horses = horses;
+        this.wins = new long[horses.length];
+        this.places = new long[horses.length];
+        this.falls = new long[horses.length];
+        this.statistics = collectStatistics ? new HorseStatistics[horses.length] : null;
+        if (collectStatistics) {
+            for (int i = 0; i < horses.length; i++) {
+                statistics[i] = new HorseStatistics();
+            }
+        }
+    }
+
+    boolean collectsStatistics() {
+        return statistics != null;
+    }
+
+    void recordStatistics(int lane, double averageSpeed, int finishedOnTick) {
+        statistics[lane].recordRace(averageSpeed, finishedOnTick);
+    }
+
+    void recordRace(int winner, int second, boolean deadHeat, boolean[] fallen) {
+        races++;
+        if (winner < 0) {
+            noWinner++;
+        } else {
+            wins[winner]++;
+            places[winner]++;
+        }
+        if (second >= 0) {
+            places[second]++;
+        }
+        if (deadHeat) {
+            deadHeats++;
+        }
+        for (int i = 0; i < fallen.length; i++) {
+            if (fallen[i]) {
+                falls[i]++;
+            }
+        }
+    }
+
+    // Counts for a run of races tallied elsewhere, e.g. by BitSlicedEngine.
+    void recordRaces(long races, long deadHeats, long noWinner, long[] wins, long[] places, long[] falls) {
+        for (int i = 0; i < this.wins.length; i++) {
+            this.wins[i] += wins[i];
+            this.places[i] += places[i];
+            this.falls[i] += falls[i];
+        }
+        this.races += races;
+        this.deadHeats += deadHeats;
+        this.noWinner += noWinner;
+    }
+
+    SimulationResult merge(SimulationResult other) {
+        for (int i = 0; i < wins.length; i++) {
+            wins[i] += other.wins[i];
+            places[i] += other.places[i];
+            falls[i] += other.falls[i];
+        }
+        if (statistics != null) {
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i].merge(other.statistics[i]);
+            }
+        }
+        races += other.races;
+        deadHeats += other.deadHeats;
+        noWinner += other.noWinner;
+        return this;
+    }
+
+    public long getRaces() {
+        return races;
+    }
+
+    public double getWinProbability(int lane) {
+        return ratio(wins[lane]);
+    }
+
+    public double getPlaceProbability(int lane) {
+        return ratio(places[lane]);
+    }
+
+    public double getFallProbability(int lane) {
+        return ratio(falls[lane]);
+    }
+
+    public double getWinProbability(Horse2 horse) {
+        int lane = laneOf(horse);
+        return lane < 0 ? 0 : getWinProbability(lane);
+    }
+
+    public double getPlaceProbability(Horse2 horse) {
+        int lane = laneOf(horse);
+        return lane < 0 ? 0 : getPlaceProbability(lane);
+    }
+
+    public double getFallProbability(Horse2 horse) {
+        int lane = laneOf(horse);
+        return lane < 0 ? 0 : getFallProbability(lane);
+    }
+
+    // Speed over the race and finish tick per lane; null unless collected.
+    public HorseStatistics getStatistics(int lane) {
+        return statistics == null ? null : statistics[lane];
+    }
+
+    public double getDeadHeatProbability() {
+        return ratio(deadHeats);
+    }
+
+    public double getNoWinnerProbability() {
+        return ratio(noWinner);
+    }
+
+    private double ratio(long count) {
+        return races == 0 ? 0 : (double) count / races;
+    }
+
+    private int laneOf(Horse2 horse) {
+        for (int i = 0; i < horses.length; i++) {
+            if (horses[i] == horse) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d races, dead heat %.4f, no winner %.4f%n",
+                races, getDeadHeatProbability(), getNoWinnerProbability()));
+        for (int i = 0; i < horses.length; i++) {
+            if (horses[i] != null) {
+                sb.append(String.format("%c: %-12s win %.4f  place %.4f  fall %.4f%n",
+                        horses[i].getSymbol(), horses[i].getName(),
+                        getWinProbability(i), getPlaceProbability(i), getFallProbability(i)));
+                if (statistics != null && statistics[i].getFinishTick().getCount() > 0) {
+                    RunningStats finish = statistics[i].getFinishTick();
+                    sb.append(String.format("   finish tick mean %.1f  sd %.1f  p10 %.0f  p50 %.0f  p90 %.0f%n",
+                            finish.getMean(), finish.getStandardDeviation(), finish.getQuantile(0.1),
+                            finish.getMedian(), finish.getQuantile(0.9)));
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
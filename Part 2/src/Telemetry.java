@@ -0,0 +1,73 @@
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Timings and counters for the hot paths, switched on with -Drace.telemetry=true.
+// ENABLED is a static final, so when it is off the JIT drops the guarded
+// calls and the only cost left at each site is the call to start(), which
+// returns 0 without reading the clock.
+//
+//   long start = Telemetry.start();
+//   ... work ...
+//   Telemetry.record(Telemetry.TICK_TIME, start);
+public final class Telemetry {
+    public static final boolean ENABLED = Boolean.getBoolean("race.telemetry");
+
+    public static final LatencyHistogram TICK_TIME = new LatencyHistogram();
+    public static final LatencyHistogram PAINT_TIME = new LatencyHistogram();
+    public static final LatencyHistogram EDT_DELAY = new LatencyHistogram();
+    public static final LatencyHistogram SETTLEMENT_TIME = new LatencyHistogram();
+
+    private static final LongAdder TICKS = new LongAdder();
+    private static final LongAdder RACES = new LongAdder();
+    private static final LongAdder BETS = new LongAdder();
+
+    private Telemetry() {
+    }
+
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void record(LatencyHistogram histogram, long start) {
+        if (ENABLED) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public static void tick() {
+        if (ENABLED) TICKS.increment();
+    }
+
+    public static void raceFinished() {
+        if (ENABLED) RACES.increment();
+    }
+
+    public static void betPlaced() {
+        if (ENABLED) BETS.increment();
+    }
+
+    public static TelemetrySnapshot snapshot() {
+        return new TelemetrySnapshot(System.nanoTime(), TICKS.sum(), RACES.sum(), BETS.sum(),
+                TICK_TIME.snapshot(), PAINT_TIME.snapshot(), EDT_DELAY.snapshot(), SETTLEMENT_TIME.snapshot());
+    }
+
+    // Prints a report every period, with rates over that period; does
+    // nothing when telemetry is off.
+    public static void startReporting(long periodSeconds, PrintStream out) {
+        if (!ENABLED) return;
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "race-telemetry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TelemetrySnapshot[] previous = {snapshot()};
+        reporter.scheduleAtFixedRate(() -> {
+            TelemetrySnapshot current = snapshot();
+            out.print(current.report(previous[0]));
+            previous[0] = current;
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+}
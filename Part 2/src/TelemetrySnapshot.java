@@ -0,0 +1,91 @@
+// Telemetry counters and histogram copies taken at one moment. Rates are
+// worked out between two snapshots.
+public final class TelemetrySnapshot {
+    private final long takenAt;
+    private final long ticks;
+    private final long races;
+    private final long bets;
+    private final LatencyHistogram tickTime;
+    private final LatencyHistogram paintTime;
+    private final LatencyHistogram edtDelay;
+    private final LatencyHistogram settlementTime;
+
+    TelemetrySnapshot(long takenAt, long ticks, long races, long bets, LatencyHistogram tickTime,
+                      LatencyHistogram paintTime, LatencyHistogram edtDelay, LatencyHistogram settlementTime) {
+        this.takenAt = takenAt;
+        this.ticks = ticks;
+        this.races = races;
+        this.bets = bets;
+        this.tickTime = tickTime;
+        this.paintTime = paintTime;
+        this.edtDelay = edtDelay;
+        this.settlementTime = settlementTime;
+    }
+
+    // System.nanoTime() when the snapshot was taken.
+    public long getTakenAt() {
+        return takenAt;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getRaces() {
+        return races;
+    }
+
+    public long getBets() {
+        return bets;
+    }
+
+    public LatencyHistogram getTickTime() {
+        return tickTime;
+    }
+
+    public LatencyHistogram getPaintTime() {
+        return paintTime;
+    }
+
+    public LatencyHistogram getEdtDelay() {
+        return edtDelay;
+    }
+
+    public LatencyHistogram getSettlementTime() {
+        return settlementTime;
+    }
+
+    public double racesPerSecond(TelemetrySnapshot since) {
+        return rate(races - since.races, since);
+    }
+
+    public double betsPerSecond(TelemetrySnapshot since) {
+        return rate(bets - since.bets, since);
+    }
+
+    public double ticksPerSecond(TelemetrySnapshot since) {
+        return rate(ticks - since.ticks, since);
+    }
+
+    private double rate(long delta, TelemetrySnapshot since) {
+        long nanos = takenAt - since.takenAt;
+        return nanos <= 0 ? 0 : delta * 1e9 / nanos;
+    }
+
+    // Rates since the earlier snapshot; latencies cover everything recorded so far.
+    public String report(TelemetrySnapshot since) {
+        return String.format("-- telemetry --%n"
+                        + "ticks %d (%.1f/s)  races %d (%.2f/s)  bets %d (%.1f/s)%n"
+                        + "tick        %s%n"
+                        + "paint       %s%n"
+                        + "edt delay   %s%n"
+                        + "settlement  %s%n",
+                ticks, ticksPerSecond(since), races, racesPerSecond(since), bets, betsPerSecond(since),
+                tickTime.summary(), paintTime.summary(), edtDelay.summary(), settlementTime.summary());
+    }
+
+    @Override
+    public String toString() {
+        return report(this);
+    }
+}
@@ -0,0 +1,24 @@
+// The data-parallel half of RaceState.tick, for kernels that work on many
+// lanes at once. Lane i uses bits[i] as its random draw for the tick, moving
+// if the high half is below moveThreshold[i] and falling if the low half is
+// below fallThreshold[i], exactly as the scalar kernel does. Lanes set in
+// stopped are left alone. The kernel sets a lane's bit in moved, fell and
+// finished (moved onto raceLength) and bumps its distance; the caller
+// clears those words beforehand and does the rest of the bookkeeping.
+interface TickKernel {
+    void step(int lanes, long[] bits, long[] moveThreshold, long[] fallThreshold, long[] stopped,
+              int[] distance, int raceLength, long[] moved, long[] fell, long[] finished);
+
+    // The Vector API kernel if it was compiled in (mvn -Pvector) and the JVM
+    // was started with --add-modules jdk.incubator.vector, otherwise null.
+    // -Drace.kernel=scalar turns it off.
+    static TickKernel vectorized() {
+        if ("scalar".equals(System.getProperty("race.kernel"))) return null;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            return (TickKernel) Class.forName("VectorTickKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+// One bet in a TotePool: who placed it, on which horse, and the stake in cents.
+public final class Ticket {
+    private final long id;
+    private final long bettor;
+    private final Horse2 horse;
+    private final long stake;
+
+    Ticket(long id, long bettor, Horse2 horse, long stake) {
+        this.id = id;
+        this.bettor = bettor;
+        this.horse = horse;
+        this.stake = stake;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getBettor() {
+        return bettor;
+    }
+
+    public Horse2 getHorse() {
+        return horse;
+    }
+
+    public long getStake() {
+        return stake;
+    }
+
+    @Override
+    public String toString() {
+        return "Ticket " + id + ": bettor " + bettor + ", $" + Money.format(stake) + " on " + horse.getName();
+    }
+}
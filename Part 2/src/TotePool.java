@@ -0,0 +1,234 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A shared pari-mutuel pool. Every bet goes into the pool for its horse, and
+// when the race is over the pool, less the takeout, is shared among the
+// tickets on the winner in proportion to their stakes. Amounts are in cents.
+//
+// Bets are taken from any number of threads. Each thread appends its tickets
+// to one of several stripes, picked by thread, so bettors rarely wait on
+// one another; the per-horse and overall totals are LongAdders, so reading
+// them never walks the tickets. Closing the pool takes every stripe lock in
+// turn, after which no bet can still be on its way in, and settling walks
+// the stripes once to pay every winning ticket.
+public class TotePool {
+    public static final int BASIS_POINTS = 10_000;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+
+    private final int takeoutBasisPoints;
+    private final Stripe[] stripes;
+    private final int stripeBits;
+    private final ConcurrentHashMap<Horse2, LongAdder> horsePools = new ConcurrentHashMap<>();
+    private final LongAdder poolTotal = new LongAdder();
+    private final LongAdder ticketCount = new LongAdder();
+    private volatile boolean open = true;
+
+    public TotePool() {
+        this(0);
+    }
+
+    public TotePool(int takeoutBasisPoints) {
+        this(takeoutBasisPoints, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public TotePool(int takeoutBasisPoints, int stripeCount) {
+        if (takeoutBasisPoints < 0 || takeoutBasisPoints >= BASIS_POINTS) {
+            throw new IllegalArgumentException("Takeout must be between 0 and " + (BASIS_POINTS - 1) + " basis points");
+        }
+        if (stripeCount <= 0) throw new IllegalArgumentException("Stripe count must be positive");
+        this.takeoutBasisPoints = takeoutBasisPoints;
+        this.stripeBits = 32 - Integer.numberOfLeadingZeros(stripeCount - 1);
+        this.stripes = new Stripe[1 << stripeBits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Returns the ticket id. Ids are unique within a race but not in order.
+    public long placeBet(long bettor, Horse2 horse, long stake) {
+        if (horse == null) throw new IllegalArgumentException("No horse selected");
+        if (stake <= 0) throw new IllegalArgumentException("Bet amount must be positive");
+
+        int index = stripeIndex();
+        Stripe stripe = stripes[index];
+        stripe.lock.lock();
+        try {
+            if (!open) throw new IllegalStateException("Betting is closed");
+            // Looked up under the lock, as reset() holds every stripe lock
+            // while it drops the horse pools.
+            LongAdder horsePool = horsePools.computeIfAbsent(horse, h -> new LongAdder());
+            int count = stripe.add(bettor, horse, stake);
+            horsePool.add(stake);
+            poolTotal.add(stake);
+            ticketCount.increment();
+            Telemetry.betPlaced();
+            return (long) count << stripeBits | index;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    // Stops taking bets. Once this returns every accepted bet is in the totals.
+    public void close() {
+        open = false;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            stripe.lock.unlock();
+        }
+    }
+
+    public long getPoolTotal() {
+        return poolTotal.sum();
+    }
+
+    public long getHorseTotal(Horse2 horse) {
+        LongAdder horsePool = horsePools.get(horse);
+        return horsePool == null ? 0 : horsePool.sum();
+    }
+
+    public long getTicketCount() {
+        return ticketCount.sum();
+    }
+
+    public int getTakeoutBasisPoints() {
+        return takeoutBasisPoints;
+    }
+
+    // What the pool would pay out in total if the race ended now.
+    public long getNetPool() {
+        return netPool(getPoolTotal());
+    }
+
+    // What a stake on the horse would return if the race ended now, with the
+    // stake already counted in the pool. Zero if nothing is on the horse.
+    public long quote(Horse2 horse, long stake) {
+        long horseTotal = getHorseTotal(horse);
+        return horseTotal == 0 ? 0 : Money.scale(stake, getNetPool(), horseTotal);
+    }
+
+    public List<Ticket> getTickets(long bettor) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (int s = 0; s < stripes.length; s++) {
+            Stripe stripe = stripes[s];
+            stripe.lock.lock();
+            try {
+                for (int i = 0; i < stripe.count; i++) {
+                    if (stripe.bettors[i] == bettor) {
+                        tickets.add(new Ticket((long) i << stripeBits | s, bettor, stripe.horses[i], stripe.stakes[i]));
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return tickets;
+    }
+
+    // Closes the pool and pays every ticket on the winner, rounded down to the
+    // cent. With no winner, or nobody on it, nothing is paid.
+    public Settlement settle(Horse2 winner) {
+        long start = Telemetry.start();
+        Settlement settlement = pay(winner);
+        Telemetry.record(Telemetry.SETTLEMENT_TIME, start);
+        return settlement;
+    }
+
+    private Settlement pay(Horse2 winner) {
+        close();
+        long total = getPoolTotal();
+        long net = netPool(total);
+        long winningStake = winner == null ? 0 : getHorseTotal(winner);
+        if (winningStake == 0) {
+            return Settlement.empty(winner, total, net, 0);
+        }
+
+        int capacity = 16;
+        long[] ids = new long[capacity];
+        long[] bettors = new long[capacity];
+        long[] payouts = new long[capacity];
+        int winning = 0;
+        for (int s = 0; s < stripes.length; s++) {
+            Stripe stripe = stripes[s];
+            for (int i = 0; i < stripe.count; i++) {
+                if (stripe.horses[i] != winner) continue;
+                if (winning == capacity) {
+                    capacity *= 2;
+                    ids = Arrays.copyOf(ids, capacity);
+                    bettors = Arrays.copyOf(bettors, capacity);
+                    payouts = Arrays.copyOf(payouts, capacity);
+                }
+                ids[winning] = (long) i << stripeBits | s;
+                bettors[winning] = stripe.bettors[i];
+                payouts[winning] = Money.scale(stripe.stakes[i], net, winningStake);
+                winning++;
+            }
+        }
+        return new Settlement(winner, total, net, winningStake, Arrays.copyOf(ids, winning),
+                Arrays.copyOf(bettors, winning), Arrays.copyOf(payouts, winning));
+    }
+
+    // Clears every ticket and opens the pool for the next race.
+    public void reset() {
+        open = false;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.clear();
+            }
+            horsePools.clear();
+            poolTotal.reset();
+            ticketCount.reset();
+            open = true;
+        } finally {
+            for (Stripe stripe : stripes) {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private long netPool(long total) {
+        return total - Money.scale(total, takeoutBasisPoints, BASIS_POINTS);
+    }
+
+    private int stripeIndex() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    // Tickets taken by one stripe, as parallel arrays.
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        long[] bettors = new long[INITIAL_STRIPE_CAPACITY];
+        Horse2[] horses = new Horse2[INITIAL_STRIPE_CAPACITY];
+        long[] stakes = new long[INITIAL_STRIPE_CAPACITY];
+        int count;
+
+        int add(long bettor, Horse2 horse, long stake) {
+            if (count == stakes.length) {
+                bettors = Arrays.copyOf(bettors, count * 2);
+                horses = Arrays.copyOf(horses, count * 2);
+                stakes = Arrays.copyOf(stakes, count * 2);
+            }
+            bettors[count] = bettor;
+            horses[count] = horse;
+            stakes[count] = stake;
+            return count++;
+        }
+
+        void clear() {
+            Arrays.fill(horses, 0, count, null);
+            count = 0;
+        }
+    }
+}
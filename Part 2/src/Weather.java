@@ -0,0 +1,56 @@
+// Track conditions. Each slows every horse by the same factor and knocks a
+// fixed amount off their confidence for as long as it lasts; how much more
+// often horses fall is up to the FallRule in use. New weathers go at the
+// end: the metrics file keeps a track record per weather by ordinal.
+public enum Weather {
+    SUNNY("Sunny", 1.0, 0.0),
+    RAINY("Rainy", 0.8, 0.05),
+    MUDDY("Muddy", 0.7, 0.1),
+    ICY("Icy", 0.5, 0.15);
+
+    private static final Weather[] VALUES = values();
+
+    private final String label;
+    private final double speedModifier;
+    private final double confidencePenalty;
+
+    Weather(String label, double speedModifier, double confidencePenalty) {
+        this.label = label;
+        this.speedModifier = speedModifier;
+        this.confidencePenalty = confidencePenalty;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public double getSpeedModifier() {
+        return speedModifier;
+    }
+
+    // A horse's confidence in this weather. Bad weather never takes it below 0.1.
+    public double adjustConfidence(double confidence) {
+        return confidencePenalty == 0 ? confidence : Math.max(0.1, confidence - confidencePenalty);
+    }
+
+    static Weather of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    static int count() {
+        return VALUES.length;
+    }
+
+    // Accepts the label in any case, e.g. from the command line or a race log.
+    public static Weather fromLabel(String label) {
+        for (Weather weather : VALUES) {
+            if (weather.label.equalsIgnoreCase(label)) return weather;
+        }
+        throw new IllegalArgumentException("Unknown weather: " + label);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BetLedgerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoveryCutsOffARecordTornAtAnyByte() throws IOException {
+        Path file = dir.resolve("bets.wal");
+        try (BetLedger ledger = BetLedger.open(file)) {
+            ledger.recordBet(1, "Thunder", 500);
+            ledger.recordBet(1, "Storm", 300);
+            ledger.recordSettle(1, 900);
+        }
+        long intact = Files.size(file);
+        try (BetLedger ledger = BetLedger.open(file)) {
+            ledger.recordBet(2, "Storm", 200);
+        }
+        byte[] full = Files.readAllBytes(file);
+
+        for (int cut = (int) intact + 1; cut < full.length; cut++) {
+            Path torn = dir.resolve("torn-" + cut + ".wal");
+            Files.write(torn, Arrays.copyOf(full, cut));
+            try (BetLedger ledger = BetLedger.open(torn)) {
+                assertEquals(3, ledger.getRecoveredRecords(), "cut at " + cut);
+                assertEquals(100, ledger.getBalanceChange(1), "cut at " + cut);
+                assertEquals(List.of(), ledger.getOpenBets(1), "cut at " + cut);
+                assertEquals(0, ledger.getBalanceChange(2), "cut at " + cut);
+                assertEquals(List.of(), ledger.getOpenBets(2), "cut at " + cut);
+                assertEquals(intact, Files.size(torn), "cut at " + cut);
+
+                // Appending carries on from the end of the last whole record.
+                ledger.recordBet(2, "Thunder", 50);
+            }
+            try (BetLedger ledger = BetLedger.open(torn)) {
+                assertEquals(4, ledger.getRecoveredRecords(), "cut at " + cut);
+                assertEquals(-50, ledger.getBalanceChange(2), "cut at " + cut);
+                List<BetLedger.OpenBet> open = ledger.getOpenBets(2);
+                assertEquals(1, open.size(), "cut at " + cut);
+                assertEquals("Thunder", open.get(0).getHorse(), "cut at " + cut);
+                assertEquals(50, open.get(0).getStake(), "cut at " + cut);
+            }
+        }
+    }
+}
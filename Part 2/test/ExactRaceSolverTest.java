@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExactRaceSolverTest {
+    private static final int RACE_LENGTH = 20;
+    private static final int RACES = 200_000;
+    // Standard errors of a Monte Carlo estimate allowed between it and the
+    // exact value. The seeds are fixed, so this only has to hold once.
+    private static final double STANDARD_ERRORS = 5;
+
+    private static final Horse2[] FIELD = {
+            new Horse2('A', "Thunder", 0.9, "Rectangle", Color.RED),
+            new Horse2('B', "Lightning", 0.8, "Circle", Color.BLUE),
+            null,
+            new Horse2('C', "Storm", 0.6, "Triangle", Color.GREEN),
+            new Horse2('D', "Doom", 0.4, "Diamond", Color.YELLOW),
+    };
+
+    @Test
+    void tickKernelMatchesTheExactSolution() {
+        for (Weather weather : Weather.values()) {
+            MonteCarloSimulator simulator = new MonteCarloSimulator(FIELD, weather, RACE_LENGTH);
+            assertMatchesExact(weather, simulator.run(RACES, 7));
+        }
+    }
+
+    @Test
+    void eventEngineMatchesTheExactSolution() {
+        for (Weather weather : Weather.values()) {
+            MonteCarloSimulator simulator = new MonteCarloSimulator(FIELD, weather, RACE_LENGTH);
+            simulator.setEventDriven(true);
+            assertMatchesExact(weather, simulator.run(RACES, 11));
+        }
+    }
+
+    @Test
+    void bitSlicedEngineMatchesTheExactSolution() {
+        for (Weather weather : Weather.values()) {
+            MonteCarloSimulator simulator = new MonteCarloSimulator(FIELD, weather, RACE_LENGTH);
+            simulator.setBitSliced(true);
+            assertMatchesExact(weather, simulator.run(RACES, 13));
+        }
+    }
+
+    private static void assertMatchesExact(Weather weather, SimulationResult simulated) {
+        RaceProbabilities exact = ExactRaceSolver.solve(FIELD, weather, RACE_LENGTH);
+        for (int lane = 0; lane < FIELD.length; lane++) {
+            if (FIELD[lane] == null) continue;
+            String where = weather + ", lane " + lane;
+            assertClose(exact.getWinProbability(lane), simulated.getWinProbability(lane), "win, " + where);
+            assertClose(exact.getPlaceProbability(lane), simulated.getPlaceProbability(lane), "place, " + where);
+            assertClose(exact.getFallProbability(lane), simulated.getFallProbability(lane), "fall, " + where);
+        }
+        assertClose(exact.getDeadHeatProbability(), simulated.getDeadHeatProbability(), "dead heat, " + weather);
+        assertClose(exact.getNoWinnerProbability(), simulated.getNoWinnerProbability(), "no winner, " + weather);
+    }
+
+    private static void assertClose(double exact, double simulated, String what) {
+        double standardError = Math.sqrt(exact * (1 - exact) / RACES);
+        assertEquals(exact, simulated, STANDARD_ERRORS * standardError + 1e-9, what);
+    }
+}
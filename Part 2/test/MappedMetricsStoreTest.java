@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedMetricsStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void historyIsDownsampledOnceFullAndSurvivesReopening() throws IOException {
+        Path file = dir.resolve("metrics.dat");
+        int races = 5000;
+        try (MappedMetricsStore store = new MappedMetricsStore(file)) {
+            for (int r = 0; r < races; r++) {
+                store.recordRace("Thunder", false, 0.5, Weather.SUNNY, 40, r);
+            }
+        }
+        long size = Files.size(file);
+        try (MappedMetricsStore store = new MappedMetricsStore(file)) {
+            ConfidenceHistory history = store.getHistory("Thunder");
+            assertTrue(history.size() <= MappedMetricsStore.HISTORY_CAPACITY);
+            assertEquals(races, history.totalRaces());
+            long covered = 0;
+            for (int i = 0; i < history.size(); i++) {
+                covered += history.racesIn(i);
+            }
+            assertEquals(races, covered);
+            assertEquals(races - 1, history.get(history.size() - 1));
+
+            for (int r = 0; r < races; r++) {
+                store.recordRace("Thunder", false, 0.5, Weather.SUNNY, 40, r);
+            }
+        }
+        assertEquals(size, Files.size(file));
+    }
+
+    @Test
+    void keepsATrackRecordForEveryWeather() throws IOException {
+        try (MappedMetricsStore store = new MappedMetricsStore(dir.resolve("metrics.dat"))) {
+            for (Weather weather : Weather.values()) {
+                store.recordRace("Storm", false, 0.5, weather, 10 + weather.ordinal(), 0.7);
+            }
+            for (Weather weather : Weather.values()) {
+                assertEquals(10 + weather.ordinal(), store.getTrackRecord("Storm", weather));
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QuantileSketchTest {
+    private static final double[] QUANTILES = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+
+    @Test
+    void mergedSketchesMatchASingleStream() {
+        SplittableRandom random = new SplittableRandom(42);
+        double[] values = new double[200_000];
+        QuantileSketch single = new QuantileSketch();
+        QuantileSketch[] parts = new QuantileSketch[16];
+        for (int p = 0; p < parts.length; p++) {
+            parts[p] = new QuantileSketch();
+        }
+        for (int i = 0; i < values.length; i++) {
+            // Skewed, like finish ticks: a long right tail.
+            values[i] = Math.exp(random.nextDouble() * 2) + random.nextDouble();
+            single.add(values[i]);
+            parts[i % parts.length].add(values[i]);
+        }
+        QuantileSketch merged = new QuantileSketch();
+        for (QuantileSketch part : parts) {
+            merged.merge(part);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, merged.getCount());
+        assertEquals(values[0], merged.getMin());
+        assertEquals(values[values.length - 1], merged.getMax());
+        for (double q : QUANTILES) {
+            // Compared by rank: where each estimate falls among the samples.
+            double singleRank = rank(values, single.getQuantile(q));
+            double mergedRank = rank(values, merged.getQuantile(q));
+            double tolerance = 0.005 + 0.05 * q * (1 - q);
+            assertEquals(q, singleRank, tolerance, "single stream at " + q);
+            assertEquals(q, mergedRank, tolerance, "merged at " + q);
+            assertEquals(singleRank, mergedRank, tolerance, "merged against single stream at " + q);
+        }
+    }
+
+    @Test
+    void fewValuesAreKeptExactly() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double v : new double[]{5, 1, 4, 2, 3}) {
+            sketch.add(v);
+        }
+        assertEquals(5, sketch.getCentroidCount());
+        assertEquals(1, sketch.getMin());
+        assertEquals(3, sketch.getQuantile(0.5), 1e-9);
+        assertEquals(5, sketch.getMax());
+    }
+
+    private static double rank(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) index = -index - 1;
+        return (double) index / sorted.length;
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RaceLogReaderTest {
+
+    @Test
+    void readsEveryRaceOfACompleteLog() {
+        byte[] log = concat(race(1), race(2), race(3));
+        List<RaceRecording> races = RaceLogReader.read(log);
+        assertEquals(3, races.size());
+        for (int r = 0; r < 3; r++) {
+            assertEquals(r + 1, races.get(r).getSeed());
+        }
+    }
+
+    @Test
+    void racesAppendedAfterACutOffRaceAreStillRead() {
+        byte[] first = race(1);
+        byte[] cutOff = race(2);
+        byte[] later = race(3);
+        RaceRecording expected = RaceLogReader.read(later).get(0);
+
+        // Every cut, at record boundaries and inside records alike.
+        for (int cut = 1; cut < cutOff.length; cut++) {
+            byte[] truncated = Arrays.copyOf(cutOff, cut);
+            assertEquals(List.of(), RaceLogReader.read(truncated), "cut at " + cut);
+
+            List<RaceRecording> races = RaceLogReader.read(concat(first, truncated, later));
+            assertEquals(2, races.size(), "cut at " + cut);
+            assertEquals(1, races.get(0).getSeed(), "cut at " + cut);
+            RaceRecording read = races.get(1);
+            assertEquals(expected.getSeed(), read.getSeed(), "cut at " + cut);
+            assertEquals(expected.getTotalTicks(), read.getTotalTicks(), "cut at " + cut);
+            assertEquals(expected.getWinner(), read.getWinner(), "cut at " + cut);
+            assertEquals(expected.getEncodedSize(), read.getEncodedSize(), "cut at " + cut);
+        }
+    }
+
+    private static byte[] race(long seed) {
+        Horse2[] field = {
+                new Horse2('A', "Apple", 0.6, "Circle", Color.RED),
+                null,
+                new Horse2('B', "Bolt", 0.5, "Circle", Color.BLUE),
+                new Horse2('C', "Comet", 0.7, "Circle", Color.GREEN),
+        };
+        RaceState state = new RaceState(field, 20, Weather.SUNNY, Race2::fallChance);
+        RandomGenerator random = RaceRandom.fromSeed(seed);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (RaceLogWriter writer = RaceLogWriter.inMemory(bytes)) {
+            writer.raceStarted(state, Weather.SUNNY, seed);
+            int firstHome = -1;
+            while (firstHome < 0 && !state.allFallen()) {
+                firstHome = state.tick(random);
+                writer.tick(state);
+            }
+            writer.raceFinished(state);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,52 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TotePoolTest {
+    @Test
+    void betsRacingAResetNeverOverpay() throws InterruptedException {
+        Horse2 a = new Horse2('A', "Thunder", 0.9, "Rectangle", Color.RED);
+        Horse2 b = new Horse2('B', "Lightning", 0.8, "Circle", Color.BLUE);
+        TotePool pool = new TotePool(1500, 4);
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Thread> bettors = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long bettor = t;
+            Thread thread = new Thread(() -> {
+                long stake = 1;
+                while (!stop.get()) {
+                    try {
+                        pool.placeBet(bettor, stake % 3 == 0 ? b : a, 100 + stake++ % 900);
+                        Thread.yield();
+                    } catch (IllegalStateException closed) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            bettors.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (int round = 0; round < 500; round++) {
+                pool.reset();
+                Thread.yield();
+                Settlement settlement = pool.settle(a);
+                assertEquals(pool.getPoolTotal(), pool.getHorseTotal(a) + pool.getHorseTotal(b),
+                        "round " + round);
+                assertTrue(settlement.getTotalPaid() <= settlement.getNetPool(), "round " + round);
+            }
+        } finally {
+            stop.set(true);
+            for (Thread thread : bettors) {
+                thread.join();
+            }
+        }
+    }
+}
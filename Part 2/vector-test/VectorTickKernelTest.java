@@ -0,0 +1,53 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Built and run by mvn -Pvector only, which also hands the incubator module
+// to the test JVM, so the vector kernel has to be there.
+class VectorTickKernelTest {
+
+    @Test
+    void vectorKernelRunsTheSameRacesAsTheScalarOne() {
+        // More lanes than a word, with gaps, so the kernel sees partial
+        // words and vectors and lanes that are stopped from the start.
+        Horse2[] field = new Horse2[150];
+        for (int i = 0; i < field.length; i++) {
+            if (i % 7 == 3) continue;
+            field[i] = new Horse2((char) ('A' + i % 26), "Horse " + i, 0.1 + 0.9 * (i % 10) / 9,
+                    "Circle", Color.RED);
+        }
+
+        for (Weather weather : Weather.values()) {
+            for (long seed = 1; seed <= 5; seed++) {
+                RaceState scalar = new RaceState(field, 30, weather, Race2::fallChance);
+                RaceState vector = scalar.copy();
+                scalar.setVectorized(false);
+                vector.setVectorized(true);
+                assertTrue(vector.isVectorized(), "Vector API kernel not loaded");
+
+                RandomGenerator scalarRandom = RaceRandom.fromSeed(seed);
+                RandomGenerator vectorRandom = RaceRandom.fromSeed(seed);
+                String race = weather + ", seed " + seed;
+                while (scalar.getRunning() > 0) {
+                    assertEquals(scalar.tick(scalarRandom), vector.tick(vectorRandom), race);
+                    String tick = race + ", tick " + scalar.getTick();
+                    for (int i = 0; i < field.length; i++) {
+                        assertEquals(scalar.getDistance(i), vector.getDistance(i), tick + ", lane " + i);
+                        assertEquals(scalar.hasFallen(i), vector.hasFallen(i), tick + ", lane " + i);
+                        assertEquals(scalar.movedThisTick(i), vector.movedThisTick(i), tick + ", lane " + i);
+                        assertEquals(scalar.fellThisTick(i), vector.fellThisTick(i), tick + ", lane " + i);
+                    }
+                    assertEquals(scalar.getRunning(), vector.getRunning(), tick);
+                }
+                assertEquals(scalar.getFinishers(), vector.getFinishers(), race);
+                for (int place = 0; place < scalar.getFinishers(); place++) {
+                    assertEquals(scalar.getFinisher(place), vector.getFinisher(place), race);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// TickKernel on jdk.incubator.vector: one vector of lanes per step, using
+// the widest long vector the CPU has and an int vector with as many lanes
+// for the distances. Lanes past the last whole vector go through the same
+// rules one at a time. Only built by the 'vector' Maven profile; RaceState
+// finds it through TickKernel.vectorized.
+class VectorTickKernel implements TickKernel {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+    private static final int WIDTH = LONGS.length();
+    private static final long WIDTH_MASK = (1L << WIDTH) - 1;
+    // Lane i holds 1 << i. Masks are turned into bit words with these and an
+    // OR across the lanes, since JDK 17 does not compile
+    // VectorMask.fromLong and toLong to vector instructions.
+    private static final LongVector LANE_BITS = LongVector.broadcast(LONGS, 1)
+            .lanewise(VectorOperators.LSHL, LongVector.zero(LONGS).addIndex(1));
+    private static final IntVector INT_LANE_BITS = IntVector.broadcast(INTS, 1)
+            .lanewise(VectorOperators.LSHL, IntVector.zero(INTS).addIndex(1));
+
+    VectorTickKernel() {
+        // A vector must fit in a word of lane bits and not straddle two.
+        if (WIDTH < 2 || 64 % WIDTH != 0 || INTS.length() != WIDTH) {
+            throw new UnsupportedOperationException("No usable vector shape");
+        }
+    }
+
+    @Override
+    public void step(int lanes, long[] bits, long[] moveThreshold, long[] fallThreshold, long[] stopped,
+                     int[] distance, int raceLength, long[] moved, long[] fell, long[] finished) {
+        LongVector zero = LongVector.zero(LONGS);
+        int bound = LONGS.loopBound(lanes);
+        int i = 0;
+        for (; i < bound; i += WIDTH) {
+            int word = i >>> 6;
+            int shift = i & 63;
+            long live = ~(stopped[word] >>> shift) & WIDTH_MASK;
+            if (live == 0) continue;
+
+            LongVector liveBits = LANE_BITS.and(live);
+            VectorMask<Long> running = liveBits.compare(VectorOperators.NE, 0);
+            LongVector draw = LongVector.fromArray(LONGS, bits, i);
+            VectorMask<Long> moves = draw.lanewise(VectorOperators.LSHR, 32)
+                    .compare(VectorOperators.LT, LongVector.fromArray(LONGS, moveThreshold, i))
+                    .and(running);
+            VectorMask<Long> falls = draw.and(0xFFFFFFFFL)
+                    .compare(VectorOperators.LT, LongVector.fromArray(LONGS, fallThreshold, i))
+                    .and(running);
+
+            IntVector d = IntVector.fromArray(INTS, distance, i)
+                    .add((IntVector) zero.blend(1, moves).convertShape(VectorOperators.L2I, INTS, 0));
+            long movedBits = zero.blend(liveBits, moves).reduceLanes(VectorOperators.OR);
+            if (movedBits != 0) {
+                d.intoArray(distance, i);
+                moved[word] |= movedBits << shift;
+            }
+            fell[word] |= zero.blend(liveBits, falls).reduceLanes(VectorOperators.OR) << shift;
+            long home = IntVector.zero(INTS).blend(INT_LANE_BITS, d.compare(VectorOperators.EQ, raceLength))
+                    .reduceLanes(VectorOperators.OR);
+            finished[word] |= (home & live) << shift;
+        }
+
+        for (; i < lanes; i++) {
+            int word = i >>> 6;
+            long bit = 1L << i;
+            if ((stopped[word] & bit) != 0) continue;
+            if (bits[i] >>> 32 < moveThreshold[i]) {
+                distance[i]++;
+                moved[word] |= bit;
+            }
+            if ((bits[i] & 0xFFFFFFFFL) < fallThreshold[i]) {
+                fell[word] |= bit;
+            }
+            if (distance[i] == raceLength) {
+                finished[word] |= bit;
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+// The simulator's classes live in the default package, which JMH benchmarks
+// (and any other named package) cannot import. The benchmarks call these
+// factories reflectively during setup and time only the returned operation.
+public class BenchmarkFixtures {
+    private static final String[] SHAPES = {"Rectangle", "Circle", "Triangle", "Diamond", "Star"};
+    private static final Color[] COLORS = {Color.RED, Color.BLUE, Color.GREEN, Color.ORANGE, Color.MAGENTA};
+
+    static Horse2[] field(int lanes) {
+        Horse2[] horses = new Horse2[lanes];
+        for (int i = 0; i < lanes; i++) {
+            horses[i] = new Horse2((char) ('A' + i % 26), "Horse " + (i + 1), 0.5 + 0.4 * i / Math.max(1, lanes - 1),
+                    SHAPES[i % SHAPES.length], COLORS[i % COLORS.length]);
+        }
+        return horses;
+    }
+
+    // One Race2.moveHorse call per horse; horses that finish or fall start again.
+    public static IntSupplier moveHorse(int lanes, int raceLength) {
+        Race2 race = new Race2(raceLength);
+        Horse2[] horses = field(lanes);
+        for (int i = 0; i < lanes; i++) {
+            race.addHorse(horses[i], i + 1);
+        }
+        return () -> {
+            int moved = 0;
+            for (Horse2 horse : horses) {
+                race.moveHorse(horse);
+                moved += horse.getDistanceTravelled();
+                if (horse.hasFallen() || horse.getDistanceTravelled() >= raceLength) {
+                    horse.goBackToStart();
+                }
+            }
+            return moved;
+        };
+    }
+
+    // A whole race on the tick kernel, run until there is a winner or nobody
+    // is left standing, the way Race2.startRace does without drawing.
+    public static IntSupplier tickRace(int lanes, int raceLength, long seed) {
+        RaceState state = new RaceState(field(lanes), raceLength, Weather.SUNNY, Race2::fallChance);
+        RandomGenerator random = RaceRandom.fromSeed(seed);
+        return () -> {
+            state.reset();
+            while (state.getRunning() > 0) {
+                int firstHome = state.tick(random);
+                if (firstHome >= 0) return firstHome;
+            }
+            return -1;
+        };
+    }
+
+    // One tick of the kernel over the whole field; the race restarts once
+    // every horse has fallen. The track is long enough that nobody finishes.
+    // The vector kernel is only used if it is available.
+    public static IntSupplier kernelTick(int lanes, long seed, boolean vectorized) {
+        RaceState state = new RaceState(field(lanes), 1_000_000, Weather.SUNNY, Race2::fallChance);
+        state.setVectorized(vectorized);
+        if (vectorized && !state.isVectorized()) {
+            System.err.println("Vector kernel unavailable (build with -Pvector); timing the scalar kernel");
+        }
+        RandomGenerator random = RaceRandom.fromSeed(seed);
+        return () -> {
+            if (state.getRunning() == 0) state.reset();
+            return state.tick(random);
+        };
+    }
+
+    // The same tick through Race2.moveHorse, one horse object at a time.
+    public static IntSupplier moveHorseTick(int lanes) {
+        Race2 race = new Race2(1_000_000);
+        Horse2[] horses = field(lanes);
+        for (int i = 0; i < lanes; i++) {
+            race.addHorse(horses[i], i + 1);
+        }
+        return () -> {
+            int fallen = 0;
+            for (Horse2 horse : horses) {
+                race.moveHorse(horse);
+                if (horse.hasFallen()) fallen++;
+            }
+            if (fallen == lanes) {
+                for (Horse2 horse : horses) horse.goBackToStart();
+            }
+            return fallen;
+        };
+    }
+
+    // The same race resolved by EventRaceEngine.
+    public static IntSupplier eventRace(int lanes, int raceLength, long seed) {
+        EventRaceEngine engine = new EventRaceEngine(
+                new RaceState(field(lanes), raceLength, Weather.SUNNY, Race2::fallChance));
+        RandomGenerator random = RaceRandom.fromSeed(seed);
+        return () -> {
+            engine.start(random);
+            while (engine.hasPendingEvents()) {
+                int firstHome = engine.advance();
+                if (firstHome >= 0) return firstHome;
+            }
+            return -1;
+        };
+    }
+
+    // A Monte Carlo run of the given number of races on one thread, with the
+    // tick kernel, the event engine or the bit-sliced engine.
+    public static LongSupplier simulateRaces(int lanes, int raceLength, int races, String engine) {
+        MonteCarloSimulator simulator = new MonteCarloSimulator(field(lanes), Weather.SUNNY, raceLength,
+                new ForkJoinPool(1));
+        simulator.setEventDriven(engine.equals("event"));
+        simulator.setBitSliced(engine.equals("bitsliced"));
+        long[] seed = {42};
+        return () -> simulator.run(races, seed[0]++).getRaces();
+    }
+
+    // Payout for the first horse with one bet on each of the given horses.
+    public static DoubleSupplier calculateWinnings(int bets) {
+        BettingLogic betting = new BettingLogic();
+        Horse2[] horses = field(bets);
+        for (int i = 0; i < bets; i++) {
+            betting.placeBet(horses[i], 10 + i);
+        }
+        return () -> betting.calculateWinnings(horses[0]);
+    }
+
+    public static TotePool totePool() {
+        return new TotePool(1500);
+    }
+
+    // One bet of up to $100 on a random horse, from whichever thread calls it.
+    public static LongSupplier placeTote(TotePool pool, int horses) {
+        Horse2[] field = field(horses);
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return pool.placeBet(random.nextInt(10_000), field[random.nextInt(horses)], 1 + random.nextInt(10_000));
+        };
+    }
+
+    public static Runnable resetTote(TotePool pool) {
+        return pool::reset;
+    }
+
+    // Records one finished race for the field, in memory or into a mapped file.
+    public static IntSupplier recordRace(int lanes, int raceLength, String file) throws Exception {
+        PerformanceMetrics metrics = file == null ? new PerformanceMetrics()
+                : new PerformanceMetrics(Path.of(file));
+        Horse2[] horses = field(lanes);
+        RaceState state = new RaceState(horses, raceLength, Weather.SUNNY, Race2::fallChance);
+        state.bindHorses();
+        RandomGenerator random = RaceRandom.fromSeed(42);
+        while (state.getRunning() > 0 && state.tick(random) < 0) {
+            // run one race to give the horses realistic distances
+        }
+        int ticks = state.getTick();
+        return () -> {
+            metrics.recordRace(horses, Weather.SUNNY, raceLength, ticks);
+            return ticks;
+        };
+    }
+
+    // A full repaint of the race panel into an offscreen image, with the
+    // horses part way down the track. Needs java.awt.headless=true on a
+    // machine without a display.
+    public static IntSupplier paintRacePanel(int lanes, int raceLength) {
+        Horse2[] horses = field(lanes);
+        RaceState state = new RaceState(horses, raceLength, Weather.SUNNY, Race2::fallChance);
+        state.bindHorses();
+        for (int i = 0; i < lanes; i++) {
+            state.placeAt(i, raceLength * (i + 1) / (lanes + 1));
+        }
+        RacePanel panel = new RacePanel(new Race2(raceLength), horses);
+        panel.setSize(panel.getPreferredSize());
+        BufferedImage image = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_RGB);
+        return () -> {
+            Graphics2D g = image.createGraphics();
+            try {
+                panel.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+            return image.getRGB(image.getWidth() / 2, image.getHeight() / 2);
+        };
+    }
+}
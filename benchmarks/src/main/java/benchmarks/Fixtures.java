@@ -0,0 +1,24 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+// Looks up a factory on the default-package BenchmarkFixtures class.
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T create(String factory, Object... args) throws Exception {
+        for (Method method : Class.forName("BenchmarkFixtures").getMethods()) {
+            if (method.getName().equals(factory) && method.getParameterCount() == args.length) {
+                try {
+                    return (T) method.invoke(null, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        throw new NoSuchMethodException("BenchmarkFixtures." + factory);
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// PerformanceMetrics.recordRace for a finished five-horse race, kept in
+// memory or in a memory-mapped metrics file.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    @Param({"memory", "mapped"})
+    public String storage;
+
+    private Path file;
+    private IntSupplier recordRace;
+
+    @Setup
+    public void setUp() throws Exception {
+        if (storage.equals("mapped")) {
+            file = Files.createTempFile("race-metrics", ".dat");
+            Files.delete(file);
+        }
+        recordRace = Fixtures.create("recordRace", 5, 50, file == null ? null : file.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public int recordRace() {
+        return recordRace.getAsInt();
+    }
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Whole races per second, from the start to the first horse home, on the
+// tick kernel and on the event engine.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RaceBenchmark {
+    @Param({"3", "10"})
+    public int lanes;
+
+    @Param({"50", "1000"})
+    public int raceLength;
+
+    private IntSupplier tickRace;
+    private IntSupplier eventRace;
+
+    @Setup
+    public void setUp() throws Exception {
+        tickRace = Fixtures.create("tickRace", lanes, raceLength, 42L);
+        eventRace = Fixtures.create("eventRace", lanes, raceLength, 42L);
+    }
+
+    @Benchmark
+    public int tickKernel() {
+        return tickRace.getAsInt();
+    }
+
+    @Benchmark
+    public int eventEngine() {
+        return eventRace.getAsInt();
+    }
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Monte Carlo races per second on a single core, for each of
+// MonteCarloSimulator's engines.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationBenchmark {
+    private static final int RACES = 4096;
+
+    @Param({"5"})
+    public int lanes;
+
+    @Param({"50", "200"})
+    public int raceLength;
+
+    @Param({"tick", "event", "bitsliced"})
+    public String engine;
+
+    private LongSupplier simulate;
+
+    @Setup
+    public void setUp() throws Exception {
+        simulate = Fixtures.create("simulateRaces", lanes, raceLength, RACES, engine);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RACES)
+    public long races() {
+        return simulate.getAsLong();
+    }
+}
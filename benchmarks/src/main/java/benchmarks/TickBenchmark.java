@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One tick of a whole field: the RaceState kernel, scalar and vectorized,
+// against calling Race2.moveHorse on each horse.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class TickBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int lanes;
+
+    private IntSupplier kernel;
+    private IntSupplier vectorKernel;
+    private IntSupplier moveHorse;
+
+    @Setup
+    public void setUp() throws Exception {
+        kernel = Fixtures.create("kernelTick", lanes, 42L, false);
+        vectorKernel = Fixtures.create("kernelTick", lanes, 42L, true);
+        moveHorse = Fixtures.create("moveHorseTick", lanes);
+    }
+
+    @Benchmark
+    public int kernel() {
+        return kernel.getAsInt();
+    }
+
+    @Benchmark
+    public int vectorKernel() {
+        return vectorKernel.getAsInt();
+    }
+
+    @Benchmark
+    public int moveHorse() {
+        return moveHorse.getAsInt();
+    }
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// TotePool.placeBet from several threads at once into one shared pool.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ToteBenchmark {
+    private LongSupplier placeBet;
+    private Runnable reset;
+
+    @Setup
+    public void setUp() throws Exception {
+        Object pool = Fixtures.create("totePool");
+        placeBet = Fixtures.create("placeTote", pool, 10);
+        reset = Fixtures.create("resetTote", pool);
+    }
+
+    // Keeps the ticket arrays from growing across the whole run.
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        reset.run();
+    }
+
+    @Benchmark
+    public long placeBet() {
+        return placeBet.getAsLong();
+    }
+}